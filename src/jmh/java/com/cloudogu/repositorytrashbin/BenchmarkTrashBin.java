@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.cloudogu.repositorytrashbin.config.RepositoryTrashBinConfigAdapter;
+import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.repository.FullRepositoryExporter;
+import sonia.scm.repository.FullRepositoryImporter;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.InMemoryBlobStore;
+import sonia.scm.store.InMemoryBlobStoreFactory;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Trash bin backed by the in memory stores, which can be filled with generated entries.
+ */
+@Getter
+class BenchmarkTrashBin {
+
+  private final InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+  private final InMemoryConfigurationStoreFactory configurationStoreFactory = new InMemoryConfigurationStoreFactory();
+  private final InMemoryBlobStoreFactory blobStoreFactory = new InMemoryBlobStoreFactory(new InMemoryBlobStore());
+  private final ChunkStore chunkStore = new ChunkStore(new InMemoryBlobStoreFactory(new InMemoryBlobStore()), dataStoreFactory);
+  private final TrashBinConfig config = new TrashBinConfig();
+  private final RepositoryBinManager manager;
+
+  BenchmarkTrashBin() {
+    RepositoryTrashBinConfigAdapter configAdapter = mock(RepositoryTrashBinConfigAdapter.class);
+    when(configAdapter.getConfiguration()).thenReturn(config);
+    TrashBinExpiryIndex expiryIndex = new TrashBinExpiryIndex(dataStoreFactory);
+    TrashBinUsage usage = new TrashBinUsage(configurationStoreFactory);
+    manager = new RepositoryBinManager(
+      dataStoreFactory,
+      blobStoreFactory,
+      mock(FullRepositoryImporter.class),
+      mock(FullRepositoryExporter.class),
+      configAdapter,
+      mock(RepositoryManager.class),
+      mock(SnapshotStaging.class),
+      mock(SnapshotExecutor.class),
+      expiryIndex,
+      new TrashBinCleanupEngine(configurationStoreFactory, () -> 0, Duration.ZERO),
+      usage,
+      new RestoreTasks(Runnable::run, () -> "benchmark"),
+      chunkStore,
+      new TrashBinMetrics(new SimpleMeterRegistry(), expiryIndex, usage),
+      mock(TrashBinDiskSpace.class)
+    );
+  }
+
+  /**
+   * Adds the given number of entries, the first {@code expiredEntries} of them are older than the retention time.
+   */
+  void fill(int entries, int expiredEntries) {
+    DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(RepositoryBinManager.ENTRY_STORE_NAME).build();
+    Instant now = Instant.now();
+    for (int i = 0; i < entries; i++) {
+      Repository repository = new Repository("id-" + i, "git", "namespace-" + (i % 100), "repository-" + i);
+      Instant deletedAt = i < expiredEntries ? now.minus(40, ChronoUnit.DAYS) : now.minus(i % 600, ChronoUnit.HOURS);
+      store.put(repository.getId(), new TrashBinEntry(repository, "user-" + (i % 10), deletedAt));
+    }
+    manager.invalidateCache();
+  }
+
+  static void bindAdministrator() {
+    Subject subject = mock(Subject.class);
+    when(subject.isPermitted(anyString())).thenReturn(true);
+    when(subject.getPrincipal()).thenReturn("trillian");
+    ThreadContext.bind(subject);
+  }
+
+  static void unbindAdministrator() {
+    ThreadContext.unbindSubject();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading snapshots of different sizes with all codecs and storage modes. The content is
+ * compressible like typical repository data, but not trivially.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBlobsBenchmark {
+
+  private static final String PREPARED = "prepared";
+  private static final String WRITTEN = "written";
+
+  @Param({"1048576", "16777216", "67108864"})
+  private int snapshotSize;
+
+  @Param({"NONE", "GZIP"})
+  private SnapshotCodec codec;
+
+  @Param({"BLOB", "CHUNKED"})
+  private StorageMode storage;
+
+  private SnapshotBlobs snapshots;
+  private TrashBinEntry entry;
+  private byte[] content;
+  private final byte[] readBuffer = new byte[64 * 1024];
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkTrashBin trashBin = new BenchmarkTrashBin();
+    snapshots = new SnapshotBlobs(trashBin.getBlobStoreFactory(), trashBin.getChunkStore());
+    entry = new TrashBinEntry();
+    entry.setDeletedAt(Instant.now());
+    entry.setCodec(codec);
+    entry.setStorage(storage);
+    content = createContent(snapshotSize);
+    snapshots.write(PREPARED, entry, 6, output -> output.write(content));
+  }
+
+  @Benchmark
+  public SnapshotBlobs.WrittenSnapshot write() throws IOException {
+    SnapshotBlobs.WrittenSnapshot written = snapshots.write(WRITTEN, entry, 6, output -> output.write(content));
+    snapshots.delete(WRITTEN, entry);
+    return written;
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) throws IOException {
+    try (InputStream input = snapshots.open(PREPARED, entry, blackhole::consume)) {
+      int read;
+      while ((read = input.read(readBuffer)) > 0) {
+        blackhole.consume(read);
+      }
+    }
+  }
+
+  private static byte[] createContent(int size) {
+    Random random = new Random(42);
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) ('a' + random.nextInt(16));
+    }
+    return data;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrashBinListingBenchmark {
+
+  @Param({"100", "10000", "100000"})
+  private int entries;
+
+  private RepositoryBinManager manager;
+  private RepositoryTrashBinResource resource;
+  // without an If-None-Match header, so that the whole listing is mapped
+  private final Request request = mock(Request.class);
+
+  @Setup
+  public void setUp() {
+    BenchmarkTrashBin.bindAdministrator();
+    BenchmarkTrashBin trashBin = new BenchmarkTrashBin();
+    trashBin.fill(entries, 0);
+    manager = trashBin.getManager();
+    ScmPathInfoStore pathInfoStore = new ScmPathInfoStore();
+    pathInfoStore.set(() -> URI.create("/scm/api/"));
+    resource = new RepositoryTrashBinResource(manager, () -> pathInfoStore);
+  }
+
+  @TearDown
+  public void tearDown() {
+    BenchmarkTrashBin.unbindAdministrator();
+  }
+
+  @Benchmark
+  public Collection<TrashBinEntry> getAll() {
+    return manager.getAll();
+  }
+
+  @Benchmark
+  public TrashBinPage getFirstPage() {
+    return manager.getPage(new TrashBinQuery(0, 10, TrashBinSortField.DELETED_AT, true, null, null, null));
+  }
+
+  @Benchmark
+  public TrashBinPage getFilteredPage() {
+    return manager.getPage(new TrashBinQuery(0, 10, TrashBinSortField.NAME, false, "repository-42", null, null));
+  }
+
+  @Benchmark
+  public Response mapEntries() {
+    return resource.getAll(request, 0, TrashBinQuery.MAX_PAGE_SIZE, "deletedAt", true, null, null, null);
+  }
+
+  @Benchmark
+  public void streamEntries() throws IOException {
+    resource.streamAll("deletedAt", true, null, null, null).write(OutputStream.nullOutputStream());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * Single byte range of a {@code Range} header. Headers with multiple ranges or other units are not supported and are
+ * treated like missing headers, so that the whole content is sent.
+ */
+@Getter
+@AllArgsConstructor
+class ByteRange {
+
+  private static final String UNIT = "bytes=";
+
+  private final long offset;
+  private final long length;
+
+  /**
+   * Parses the header for content of the given total length. A range, which starts behind the content, is returned
+   * as unsatisfiable range.
+   */
+  static Optional<ByteRange> parse(String header, long total) {
+    if (header == null || !header.startsWith(UNIT) || header.indexOf(',') >= 0) {
+      return Optional.empty();
+    }
+    String spec = header.substring(UNIT.length()).trim();
+    int separator = spec.indexOf('-');
+    if (separator < 0) {
+      return Optional.empty();
+    }
+    try {
+      String first = spec.substring(0, separator).trim();
+      String last = spec.substring(separator + 1).trim();
+      if (first.isEmpty()) {
+        long suffix = Long.parseLong(last);
+        return Optional.of(suffix > 0 ? new ByteRange(Math.max(0, total - suffix), Math.min(suffix, total)) : unsatisfiable(total));
+      }
+      long offset = Long.parseLong(first);
+      long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+      if (end < offset) {
+        return Optional.empty();
+      }
+      return Optional.of(offset < total ? new ByteRange(offset, Math.min(end, total - 1) - offset + 1) : unsatisfiable(total));
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static ByteRange unsatisfiable(long total) {
+    return new ByteRange(total, 0);
+  }
+
+  boolean isSatisfiable() {
+    return length > 0;
+  }
+
+  String toContentRange(long total) {
+    return "bytes " + offset + "-" + (offset + length - 1) + "/" + total;
+  }
+}
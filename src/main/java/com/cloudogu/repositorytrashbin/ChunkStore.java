@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.hash.Hashing;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import sonia.scm.store.Blob;
+import sonia.scm.store.BlobStore;
+import sonia.scm.store.BlobStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Content addressed storage for chunks of snapshots. Every chunk is stored once under the SHA-256 hash of its
+ * uncompressed content and is reference counted, so that identical parts of different snapshots share their blob.
+ */
+@Singleton
+public class ChunkStore {
+
+  static final String BLOB_STORE_NAME = "trash-bin-chunks";
+  static final String REFERENCE_STORE_NAME = "trash-bin-chunk-references";
+
+  private final BlobStoreFactory blobStoreFactory;
+  private final DataStoreFactory dataStoreFactory;
+
+  @Inject
+  public ChunkStore(BlobStoreFactory blobStoreFactory, DataStoreFactory dataStoreFactory) {
+    this.blobStoreFactory = blobStoreFactory;
+    this.dataStoreFactory = dataStoreFactory;
+  }
+
+  public ChunkedSnapshot write(SnapshotCodec codec, int compressionLevel, SnapshotBlobs.SnapshotWriter writer) throws IOException {
+    BlobStore blobStore = createBlobStore();
+    DataStore<ChunkReference> references = createReferenceStore();
+    List<String> chunks = new ArrayList<>();
+    AtomicLong size = new AtomicLong();
+    AtomicLong storedBytes = new AtomicLong();
+    try (ChunkingOutputStream output = new ChunkingOutputStream((data, length) -> {
+      StoredChunk chunk = store(blobStore, references, codec, compressionLevel, data, length);
+      chunks.add(chunk.getHash());
+      size.addAndGet(chunk.getSize());
+      storedBytes.addAndGet(chunk.getStoredBytes());
+    })) {
+      writer.write(output);
+    } catch (IOException | RuntimeException e) {
+      release(chunks);
+      throw e;
+    }
+    return new ChunkedSnapshot(chunks, size.get(), storedBytes.get());
+  }
+
+  public InputStream open(List<String> chunks, LongConsumer progress) {
+    BlobStore blobStore = createBlobStore();
+    DataStore<ChunkReference> references = createReferenceStore();
+    Iterator<String> iterator = chunks.iterator();
+    return new SequenceInputStream(new Enumeration<InputStream>() {
+      @Override
+      public boolean hasMoreElements() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public InputStream nextElement() {
+        String hash = iterator.next();
+        try {
+          ChunkReference reference = references.get(hash);
+          Blob blob = blobStore.getOptional(hash).orElse(null);
+          if (reference == null || blob == null) {
+            throw new FileNotFoundException("chunk " + hash + " of snapshot is missing");
+          }
+          return reference.getCodec().decompress(new ProgressInputStream(blob.getInputStream(), progress));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Releases one reference of every given chunk and returns the number of bytes freed by chunks which are no longer
+   * referenced.
+   */
+  public synchronized long release(Collection<String> chunks) {
+    BlobStore blobStore = createBlobStore();
+    DataStore<ChunkReference> references = createReferenceStore();
+    long freed = 0;
+    for (String hash : chunks) {
+      ChunkReference reference = references.get(hash);
+      if (reference == null) {
+        continue;
+      }
+      if (reference.getReferences() > 1) {
+        reference.setReferences(reference.getReferences() - 1);
+        references.put(hash, reference);
+      } else {
+        references.remove(hash);
+        blobStore.remove(hash);
+        freed += reference.getSize();
+      }
+    }
+    return freed;
+  }
+
+  public long getStoredBytes() {
+    return createBlobStore().getAll().stream().mapToLong(Blob::getSize).sum();
+  }
+
+  private StoredChunk store(BlobStore blobStore, DataStore<ChunkReference> references, SnapshotCodec codec, int compressionLevel, byte[] data, int length) throws IOException {
+    String hash = Hashing.sha256().hashBytes(data, 0, length).toString();
+    StoredChunk existing = addReference(references, hash);
+    if (existing != null) {
+      return existing;
+    }
+    // compress outside of the lock, so that concurrent snapshots are not serialized
+    byte[] compressed = compress(codec, compressionLevel, data, length);
+    synchronized (this) {
+      existing = addReference(references, hash);
+      if (existing != null) {
+        return existing;
+      }
+      Blob blob = blobStore.create(hash);
+      try (OutputStream output = blob.getOutputStream()) {
+        output.write(compressed);
+      }
+      references.put(hash, new ChunkReference(1, codec, compressed.length));
+      return new StoredChunk(hash, compressed.length, compressed.length);
+    }
+  }
+
+  private synchronized StoredChunk addReference(DataStore<ChunkReference> references, String hash) {
+    ChunkReference reference = references.get(hash);
+    if (reference == null) {
+      return null;
+    }
+    reference.setReferences(reference.getReferences() + 1);
+    references.put(hash, reference);
+    return new StoredChunk(hash, reference.getSize(), 0);
+  }
+
+  private byte[] compress(SnapshotCodec codec, int compressionLevel, byte[] data, int length) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(length);
+    try (OutputStream output = codec.compress(buffer, compressionLevel)) {
+      output.write(data, 0, length);
+    }
+    return buffer.toByteArray();
+  }
+
+  private BlobStore createBlobStore() {
+    return blobStoreFactory.withName(BLOB_STORE_NAME).build();
+  }
+
+  private DataStore<ChunkReference> createReferenceStore() {
+    return dataStoreFactory.withType(ChunkReference.class).withName(REFERENCE_STORE_NAME).build();
+  }
+
+  @Getter
+  @AllArgsConstructor
+  private static class StoredChunk {
+    private final String hash;
+    private final long size;
+    private final long storedBytes;
+  }
+
+  /**
+   * Chunks of a written snapshot. The size is the sum of the stored size of all chunks, the stored bytes only count
+   * chunks which have not been stored before.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class ChunkedSnapshot {
+    private final List<String> chunks;
+    private final long size;
+    private final long storedBytes;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Splits the written data into chunks with content defined boundaries. A boundary is found with a gear based rolling
+ * hash over the last 64 bytes, so inserting or removing data only changes the chunks around the modification and
+ * all other chunks of two similar streams are identical.
+ */
+final class ChunkingOutputStream extends OutputStream {
+
+  static final int MIN_CHUNK_SIZE = 256 * 1024;
+  static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+  // 20 bits result in an average chunk size of 1 MiB above the minimum
+  static final int BOUNDARY_BITS = 20;
+
+  private static final long[] GEAR = createGear();
+
+  private final ChunkConsumer consumer;
+  private final int minChunkSize;
+  private final long boundaryMask;
+  private final byte[] buffer;
+
+  private int length;
+  private long hash;
+  private boolean closed;
+
+  ChunkingOutputStream(ChunkConsumer consumer) {
+    this(consumer, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE, BOUNDARY_BITS);
+  }
+
+  ChunkingOutputStream(ChunkConsumer consumer, int minChunkSize, int maxChunkSize, int boundaryBits) {
+    this.consumer = consumer;
+    this.minChunkSize = minChunkSize;
+    this.boundaryMask = -1L << (Long.SIZE - boundaryBits);
+    this.buffer = new byte[maxChunkSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  /**
+   * Copies the data into the buffer up to the next boundary at once. Bytes before the minimum chunk size cannot end a
+   * chunk and only the last 64 bytes influence the hash, so the hash is only computed from shortly before the minimum
+   * chunk size on.
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    int end = off + len;
+    int position = off;
+    while (position < end) {
+      int available = Math.min(end - position, buffer.length - length);
+      int skipped = Math.min(available, Math.max(0, minChunkSize - Long.SIZE - length));
+      System.arraycopy(b, position, buffer, length, skipped);
+      length += skipped;
+      position += skipped;
+      int boundary = findBoundary(b, position, position + available - skipped);
+      int count = boundary - position;
+      System.arraycopy(b, position, buffer, length, count);
+      length += count;
+      position += count;
+      if (isBoundary() || length == buffer.length) {
+        emitChunk();
+      }
+    }
+  }
+
+  /**
+   * Feeds the bytes into the rolling hash and returns the position after the first byte, which ends a chunk, or the
+   * end, if no byte ends a chunk.
+   */
+  private int findBoundary(byte[] b, int from, int to) {
+    long h = hash;
+    int chunkLength = length;
+    for (int i = from; i < to; i++) {
+      h = (h << 1) + GEAR[b[i] & 0xff];
+      chunkLength++;
+      if (chunkLength >= minChunkSize && (h & boundaryMask) == 0) {
+        hash = h;
+        return i + 1;
+      }
+    }
+    hash = h;
+    return to;
+  }
+
+  private boolean isBoundary() {
+    return length >= minChunkSize && (hash & boundaryMask) == 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      if (length > 0) {
+        emitChunk();
+      }
+    }
+  }
+
+  private void emitChunk() throws IOException {
+    consumer.accept(buffer, length);
+    length = 0;
+    hash = 0;
+  }
+
+  private static long[] createGear() {
+    // the table must never change, otherwise new chunks would not match the stored ones
+    SplittableRandom random = new SplittableRandom(0x7261736842696eL);
+    long[] gear = new long[256];
+    for (int i = 0; i < gear.length; i++) {
+      gear[i] = random.nextLong();
+    }
+    return gear;
+  }
+
+  @FunctionalInterface
+  interface ChunkConsumer {
+    void accept(byte[] data, int length) throws IOException;
+  }
+}
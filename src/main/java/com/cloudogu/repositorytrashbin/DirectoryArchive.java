@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archives repository directories as zip. The entries are stored without compression, so that the archive can be
+ * compressed by the codec of the snapshot and identical files result in identical chunks of chunked snapshots.
+ */
+final class DirectoryArchive {
+
+  private DirectoryArchive() {
+  }
+
+  static void write(Path directory, OutputStream output) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(output);
+    zip.setMethod(ZipOutputStream.STORED);
+    try (Stream<Path> paths = Files.walk(directory)) {
+      Iterator<Path> iterator = paths.iterator();
+      while (iterator.hasNext()) {
+        Path path = iterator.next();
+        if (path.equals(directory)) {
+          continue;
+        }
+        String name = directory.relativize(path).toString().replace('\\', '/');
+        if (Files.isDirectory(path)) {
+          zip.putNextEntry(storedEntry(name + "/", 0, 0));
+        } else {
+          zip.putNextEntry(storedFileEntry(name, path));
+          Files.copy(path, zip);
+        }
+        zip.closeEntry();
+      }
+    }
+    zip.finish();
+  }
+
+  /**
+   * Stored entries need their size and checksum before the content is written, so the file is read twice.
+   */
+  private static ZipEntry storedFileEntry(String name, Path path) throws IOException {
+    CRC32 crc = new CRC32();
+    long size;
+    try (InputStream input = new CheckedInputStream(Files.newInputStream(path), crc)) {
+      size = ByteStreams.exhaust(input);
+    }
+    return storedEntry(name, size, crc.getValue());
+  }
+
+  private static ZipEntry storedEntry(String name, long size, long crc) {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setSize(size);
+    entry.setCompressedSize(size);
+    entry.setCrc(crc);
+    return entry;
+  }
+
+  static void extract(InputStream input, Path target) throws IOException {
+    Path root = target.toAbsolutePath().normalize();
+    ZipInputStream zip = new ZipInputStream(input);
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      Path path = root.resolve(entry.getName()).normalize();
+      if (!path.startsWith(root)) {
+        throw new IOException("archive entry " + entry.getName() + " points outside of target directory");
+      }
+      if (entry.isDirectory()) {
+        Files.createDirectories(path);
+      } else {
+        Files.createDirectories(path.getParent());
+        Files.copy(zip, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      zip.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+/**
+ * Limits the number of exports running at the same time and the number of exports waiting for a free slot. The limits
+ * are passed with every call, so that changes of the configuration take effect immediately.
+ */
+class ExportAdmission {
+
+  private int running = 0;
+  private int waiting = 0;
+
+  /**
+   * Acquires a slot for an export. If all slots are taken, the caller waits for a free slot, unless
+   * {@code maxWaiting} callers are already waiting and {@code waitIfSaturated} is {@code false}. In that case
+   * {@code false} is returned without waiting.
+   */
+  synchronized boolean acquire(int maxRunning, int maxWaiting, boolean waitIfSaturated) throws InterruptedException {
+    if (running < maxRunning) {
+      running++;
+      return true;
+    }
+    if (waiting >= maxWaiting && !waitIfSaturated) {
+      return false;
+    }
+    waiting++;
+    try {
+      while (running >= maxRunning) {
+        wait();
+      }
+    } finally {
+      waiting--;
+    }
+    running++;
+    return true;
+  }
+
+  synchronized void release() {
+    running--;
+    notifyAll();
+  }
+
+  synchronized int getRunning() {
+    return running;
+  }
+
+  synchronized int getWaiting() {
+    return waiting;
+  }
+}
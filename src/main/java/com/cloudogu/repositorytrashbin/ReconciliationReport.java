@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.Getter;
+
+/**
+ * Result of the reconciliation of interrupted operations at startup.
+ */
+@Getter
+public class ReconciliationReport {
+
+  /**
+   * Interrupted operations, which have been carried out to the end.
+   */
+  private int completed;
+  /**
+   * Interrupted operations, whose partial results have been removed.
+   */
+  private int rolledBack;
+  /**
+   * Entries, which could neither be completed nor rolled back and have been marked as failed.
+   */
+  private int quarantined;
+
+  void completed() {
+    completed++;
+  }
+
+  void rolledBack() {
+    rolledBack++;
+  }
+
+  void quarantined() {
+    quarantined++;
+  }
+
+  boolean hasChanges() {
+    return completed + rolledBack + quarantined > 0;
+  }
+}
@@ -16,27 +16,171 @@
 
 package com.cloudogu.repositorytrashbin;
 
+import com.cloudogu.repositorytrashbin.config.CronExpressionValidator;
+import com.cloudogu.repositorytrashbin.config.RepositoryTrashBinConfigAdapter;
+import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sonia.scm.lifecycle.PrivilegedStartupAction;
 import sonia.scm.plugin.Extension;
+import sonia.scm.schedule.Cancelable;
 import sonia.scm.schedule.Scheduler;
 
 import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Schedules the purge of expired trash bin entries. At startup, nothing is read from the trash bin; the journal is
+ * reconciled, pending snapshots are resumed and the first purge runs in the background after the configured delay, so
+ * that the startup of the server does not depend on the size of the trash bin. Afterwards, the purge runs with the configured cron expression and whenever the next entry expires. The
+ * configuration is stored by the generic configuration resource, so the cron expression is checked for changes every
+ * minute.
+ */
 @Extension
 public class RepositoryBinCleanupJob implements PrivilegedStartupAction {
 
+  private static final Logger LOG = LoggerFactory.getLogger(RepositoryBinCleanupJob.class);
+
+  static final Duration MIN_RETRY_DELAY = Duration.ofMinutes(1);
+  static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+  static final Duration CONFIGURATION_CHECK_INTERVAL = Duration.ofMinutes(1);
+
   private final Scheduler scheduler;
   private final RepositoryBinManager binManager;
+  private final RepositoryTrashBinConfigAdapter configAdapter;
+  private final ScheduledExecutorService executor;
+
+  private ScheduledFuture<?> nextPurge;
+  private Cancelable cronPurge;
+  private String cronExpression;
+  private int failedPurges;
 
   @Inject
-  public RepositoryBinCleanupJob(Scheduler scheduler, RepositoryBinManager binManager) {
+  public RepositoryBinCleanupJob(Scheduler scheduler, RepositoryBinManager binManager, RepositoryTrashBinConfigAdapter configAdapter) {
+    this(
+      scheduler,
+      binManager,
+      configAdapter,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TrashBinExpiry-%d").setDaemon(true).build())
+    );
+  }
+
+  RepositoryBinCleanupJob(Scheduler scheduler, RepositoryBinManager binManager, RepositoryTrashBinConfigAdapter configAdapter, ScheduledExecutorService executor) {
     this.scheduler = scheduler;
     this.binManager = binManager;
+    this.configAdapter = configAdapter;
+    this.executor = executor;
   }
 
   @Override
   public void run() {
-    binManager.deleteAllExpired();
-    scheduler.schedule("0 0 2 * * ?", binManager::deleteAllExpired);
+    scheduleStartupPurge();
+    scheduleCronPurge();
+    executor.scheduleWithFixedDelay(
+      this::scheduleCronPurge,
+      CONFIGURATION_CHECK_INTERVAL.toMillis(),
+      CONFIGURATION_CHECK_INTERVAL.toMillis(),
+      TimeUnit.MILLISECONDS
+    );
+  }
+
+  private synchronized void scheduleStartupPurge() {
+    TrashBinConfig config = configAdapter.getConfiguration();
+    long delay = TimeUnit.SECONDS.toMillis(config.getStartupPurgeDelaySeconds());
+    if (config.getStartupPurgeJitterSeconds() > 0) {
+      delay += ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(config.getStartupPurgeJitterSeconds()));
+    }
+    LOG.debug("scheduling purge of expired trash bin entries in {} ms", delay);
+    nextPurge = executor.schedule(this::startup, delay, TimeUnit.MILLISECONDS);
+  }
+
+  void startup() {
+    try {
+      binManager.reconcile();
+      binManager.resumePendingSnapshots();
+    } catch (Exception e) {
+      LOG.error("failed to reconcile trash bin", e);
+    }
+    purgeExpired();
+  }
+
+  /**
+   * Schedules the purge with the configured cron expression. If the expression has been changed since the last call,
+   * the purge with the old expression is cancelled. If the expression cannot be scheduled, the purge is scheduled with
+   * the default expression instead, so that expired entries are purged nevertheless.
+   */
+  private synchronized void scheduleCronPurge() {
+    String expression = configAdapter.getConfiguration().getCleanupCron();
+    if (expression == null || expression.isEmpty()) {
+      expression = TrashBinConfig.DEFAULT_CLEANUP_CRON;
+    }
+    if (expression.equals(cronExpression)) {
+      return;
+    }
+    cronExpression = expression;
+    if (cronPurge != null) {
+      cronPurge.cancel();
+      cronPurge = null;
+    }
+    if (!(CronExpressionValidator.isValid(expression) && schedulePurge(expression)) && !TrashBinConfig.DEFAULT_CLEANUP_CRON.equals(expression)) {
+      LOG.warn("cannot purge expired trash bin entries with cron expression {}, using {} instead", expression, TrashBinConfig.DEFAULT_CLEANUP_CRON);
+      schedulePurge(TrashBinConfig.DEFAULT_CLEANUP_CRON);
+    }
+  }
+
+  private boolean schedulePurge(String expression) {
+    LOG.info("scheduling purge of expired trash bin entries with cron expression {}", expression);
+    try {
+      cronPurge = scheduler.schedule(expression, this::purgeExpired);
+      return true;
+    } catch (Exception e) {
+      LOG.error("failed to schedule purge of expired trash bin entries with cron expression {}", expression, e);
+      return false;
+    }
+  }
+
+  void purgeExpired() {
+    try {
+      binManager.deleteAllExpired();
+    } catch (Exception e) {
+      LOG.error("failed to delete expired trash bin entries", e);
+    }
+    scheduleNextPurge();
+    scheduleCronPurge();
+  }
+
+  /**
+   * Schedules the purge at the next expiration. If the next expiration is already overdue, the purge has not been able
+   * to remove the entry, for example because it is being restored. In this case, the purge is retried with an
+   * exponentially growing delay instead of immediately.
+   */
+  private synchronized void scheduleNextPurge() {
+    if (nextPurge != null) {
+      nextPurge.cancel(false);
+      nextPurge = null;
+    }
+    binManager.getNextExpiration().ifPresent(expiration -> {
+      long delay = Duration.between(Instant.now(), expiration).toMillis();
+      if (delay <= 0) {
+        delay = getRetryDelay(failedPurges++);
+        LOG.warn("expired trash bin entries could not be purged, retrying in {} ms", delay);
+      } else {
+        failedPurges = 0;
+        LOG.debug("scheduling next purge of trash bin entries at {}", expiration);
+      }
+      nextPurge = executor.schedule(this::purgeExpired, delay, TimeUnit.MILLISECONDS);
+    });
+  }
+
+  private static long getRetryDelay(int failedPurges) {
+    long delay = MIN_RETRY_DELAY.toMillis() << Math.min(failedPurges, 16);
+    return Math.min(delay, MAX_RETRY_DELAY.toMillis());
   }
 }
@@ -18,120 +18,1127 @@ package com.cloudogu.repositorytrashbin;
 
 import com.cloudogu.repositorytrashbin.config.RepositoryTrashBinConfigAdapter;
 import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
 import org.apache.shiro.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.ConcurrentModificationException;
 import sonia.scm.repository.FullRepositoryExporter;
 import sonia.scm.repository.FullRepositoryImporter;
+import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
 import sonia.scm.repository.RepositoryPermissions;
 import sonia.scm.store.Blob;
 import sonia.scm.store.BlobStore;
 import sonia.scm.store.BlobStoreFactory;
-import sonia.scm.store.ConfigurationEntryStore;
-import sonia.scm.store.ConfigurationEntryStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
 
 @Singleton
-public class RepositoryBinManager {
+public class RepositoryBinManager implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RepositoryBinManager.class);
+  private static final long MEGABYTE = 1024L * 1024L;
+  private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(30);
+  // the staged copy is hard linked whenever possible, the space for its archive is checked before it is written
+  private static final long STAGED_COPY_SIZE = 0;
 
   public static final String MANAGE_TRASH_BIN = "trashBin:manage";
   public static final String STORE_NAME = "trash-bin";
+  public static final String ENTRY_STORE_NAME = "trash-bin-entries";
+  public static final String REPOSITORY_STORE_NAME = "trash-bin-repositories";
 
-  private final ConfigurationEntryStoreFactory storeFactory;
+  private final DataStoreFactory dataStoreFactory;
   private final BlobStoreFactory blobStoreFactory;
   private final FullRepositoryImporter importer;
   private final FullRepositoryExporter exporter;
   private final RepositoryTrashBinConfigAdapter configAdapter;
+  private final RepositoryManager repositoryManager;
+  private final SnapshotStaging staging;
+  private final SnapshotExecutor snapshotExecutor;
+  private final TrashBinExpiryIndex expiryIndex;
+  private final TrashBinCleanupEngine cleanupEngine;
+  private final TrashBinUsage usage;
+  private final RestoreTasks restoreTasks;
+  private final TrashBinIndex index = new TrashBinIndex();
+  private final TrashBinBulkRunner bulkRunner = new TrashBinBulkRunner();
+  private final TrashBinLocks locks = new TrashBinLocks();
+  private final TrashBinJournal journal;
+  private final TrashBinEntryCache entryCache;
+  private final SnapshotBatch batch = new SnapshotBatch(this::finalizeBatch);
+  private final ExportAdmission exports = new ExportAdmission();
+  // the versions start anew with every start of the server, so they are prefixed with the time of the start
+  private final String versionPrefix = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+  private final AtomicLong version = new AtomicLong();
+  private final SnapshotBlobs snapshots;
+  private final TrashBinMetrics metrics;
+  private final TrashBinDiskSpace diskSpace;
 
   @Inject
   public RepositoryBinManager(
-    ConfigurationEntryStoreFactory storeFactory,
+    DataStoreFactory dataStoreFactory,
     BlobStoreFactory blobStoreFactory,
     FullRepositoryImporter importer,
     FullRepositoryExporter exporter,
-    RepositoryTrashBinConfigAdapter configAdapter) {
-    this.storeFactory = storeFactory;
+    RepositoryTrashBinConfigAdapter configAdapter,
+    RepositoryManager repositoryManager,
+    SnapshotStaging staging,
+    SnapshotExecutor snapshotExecutor,
+    TrashBinExpiryIndex expiryIndex,
+    TrashBinCleanupEngine cleanupEngine,
+    TrashBinUsage usage,
+    RestoreTasks restoreTasks,
+    ChunkStore chunkStore,
+    TrashBinMetrics metrics,
+    TrashBinDiskSpace diskSpace) {
+    this.dataStoreFactory = dataStoreFactory;
     this.blobStoreFactory = blobStoreFactory;
     this.importer = importer;
     this.exporter = exporter;
     this.configAdapter = configAdapter;
+    this.repositoryManager = repositoryManager;
+    this.staging = staging;
+    this.snapshotExecutor = snapshotExecutor;
+    this.expiryIndex = expiryIndex;
+    this.cleanupEngine = cleanupEngine;
+    this.usage = usage;
+    this.restoreTasks = restoreTasks;
+    this.snapshots = new SnapshotBlobs(blobStoreFactory, chunkStore);
+    this.journal = new TrashBinJournal(dataStoreFactory);
+    this.entryCache = new TrashBinEntryCache(dataStoreFactory);
+    this.metrics = metrics;
+    this.diskSpace = diskSpace;
   }
 
   public Collection<TrashBinEntry> getAll() {
     checkPermission();
-    return createStore().getAll().values();
+    return entryCache.getAll().values();
+  }
+
+  /**
+   * Returns the version of the trash bin, which changes whenever an entry is added, changed or removed or the used
+   * space changes. Equal versions stand for equal listings.
+   */
+  public String getVersion() {
+    checkPermission();
+    return versionPrefix + "-" + version.get();
+  }
+
+  public TrashBinPage getPage(TrashBinQuery query) {
+    checkPermission();
+    index.loadIfNecessary(entryCache::getAll);
+    return index.query(query);
+  }
+
+  /**
+   * Returns all entries matching the filters of the query in the order of the query, without building a list of all
+   * entries. The page of the query is ignored. The permission is checked once, when this method is called.
+   */
+  public Iterable<TrashBinEntry> iterate(TrashBinQuery query) {
+    checkPermission();
+    index.loadIfNecessary(entryCache::getAll);
+    return index.iterate(query);
   }
 
   public void addToTrashBin(Repository repository) {
     RepositoryPermissions.delete(repository).check();
-    createStore().put(repository.getId(), new TrashBinEntry(repository, SecurityUtils.getSubject().getPrincipal().toString(), Instant.now()));
-    Blob blob = createBlobStore().create(repository.getId());
+    TrashBinEntry entry = new TrashBinEntry(repository, SecurityUtils.getSubject().getPrincipal().toString(), Instant.now());
+    TrashBinConfig config = configAdapter.getConfiguration();
+    entry.setCodec(getCodec(config));
+    entry.setStorage(TrashBinConfig.STORAGE_MODE_CHUNKED.equals(config.getStorageMode()) ? StorageMode.CHUNKED : StorageMode.BLOB);
+    // the follow-up work is started after the lock has been released, because it may run in the calling thread
+    String repositoryId = repository.getId();
+    if (TrashBinConfig.SNAPSHOT_MODE_DIRECTORY.equals(config.getSnapshotMode())) {
+      if (locks.call(repositoryId, LOCK_TIMEOUT, () -> journal.record(repositoryId, TrashBinJournal.Operation.ADD, () -> keepDirectory(repository, entry)))) {
+        snapshotExecutor.execute(() -> enforceQuota(repositoryId));
+      } else {
+        exportInsteadOfStaging(repository, entry, config);
+      }
+    } else if (batch.isBurst(config.getBurstThreshold())) {
+      // during a burst the repository is only staged, the snapshots of the whole burst are written together later on
+      ensureSpace(repository, STAGED_COPY_SIZE, config);
+      if (locks.call(repositoryId, LOCK_TIMEOUT, () -> journal.record(repositoryId, TrashBinJournal.Operation.ADD, () -> stageForBatch(repository, entry)))) {
+        batch.add(repositoryId);
+      } else {
+        exportInsteadOfStaging(repository, entry, config);
+      }
+    } else if (TrashBinConfig.SNAPSHOT_MODE_STAGED.equals(config.getSnapshotMode()) || !admitExport(repository, config)) {
+      ensureSpace(repository, STAGED_COPY_SIZE, config);
+      locks.run(repositoryId, LOCK_TIMEOUT, () -> journal.record(repositoryId, TrashBinJournal.Operation.ADD, () -> stageSnapshot(repository, entry)));
+      snapshotExecutor.execute(() -> finalizeSnapshot(repositoryId));
+    } else {
+      exportAdmitted(repository, entry, config);
+    }
+  }
+
+  /**
+   * Exports a repository, whose directory could not be kept or staged, if a slot for the export can be acquired. A
+   * repository, which cannot be staged, cannot be archived in the background either, so the deletion fails otherwise.
+   */
+  private void exportInsteadOfStaging(Repository repository, TrashBinEntry entry, TrashBinConfig config) {
+    if (!admitExport(repository, config)) {
+      throw new RepositoryTrashBinException(
+        entity(repository).build(),
+        "Too many repositories are moved to the trash bin at the same time"
+      );
+    }
+    exportAdmitted(repository, entry, config);
+  }
+
+  /**
+   * Exports the repository, after a slot for the export has been acquired, and releases the slot afterwards.
+   */
+  private void exportAdmitted(Repository repository, TrashBinEntry entry, TrashBinConfig config) {
+    String repositoryId = repository.getId();
+    boolean exported;
     try {
-      exporter.export(repository, blob.getOutputStream(), "");
+      ensureSpace(repository, diskSpace.estimateSize(repository), config);
+      exported = locks.call(repositoryId, LOCK_TIMEOUT, () -> journal.record(repositoryId, TrashBinJournal.Operation.ADD, () -> exportSnapshot(repository, entry, config)));
+    } finally {
+      exports.release();
+    }
+    if (exported) {
+      snapshotExecutor.execute(() -> enforceQuota(repositoryId));
+    }
+  }
+
+  /**
+   * Checks that the volume of the stores keeps the configured reserve after a snapshot of the estimated size has been
+   * written. If not, the deletion fails before anything has been written.
+   */
+  private void ensureSpace(Repository repository, long estimatedSize, TrashBinConfig config) {
+    long missing = getMissingSpace(repository.getId(), estimatedSize, config);
+    if (missing > 0) {
+      throw new RepositoryTrashBinException(
+        entity(repository).build(),
+        String.format("Not enough disk space to move repository to trash bin, %d MB are missing", (missing + MEGABYTE - 1) / MEGABYTE)
+      );
+    }
+  }
+
+  /**
+   * Checks that there is enough space for the archive of a staged repository, whose size is estimated from the staged
+   * copy. The repository has been deleted already, so if the space is missing, the entry stays pending and is finalized
+   * again after the next start.
+   */
+  private boolean hasSpaceForArchive(String repositoryId, TrashBinConfig config) {
+    long estimatedSize;
+    try {
+      estimatedSize = staging.size(repositoryId);
     } catch (IOException e) {
+      LOG.warn("could not determine size of staged copy of repository {}", repositoryId, e);
+      estimatedSize = 0;
+    }
+    if (getMissingSpace(repositoryId, estimatedSize, config) > 0) {
+      LOG.warn("not enough disk space to write snapshot of repository {}; it stays pending", repositoryId);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of bytes missing to keep the configured reserve after a snapshot of the estimated size has been
+   * written, after the low space policy has been applied: the oldest entries are evicted, or a warning is logged only.
+   */
+  private long getMissingSpace(String repositoryId, long estimatedSize, TrashBinConfig config) {
+    long reserve = config.getFreeSpaceReserveMegabytes() * MEGABYTE;
+    OptionalLong usableSpace = diskSpace.getUsableSpace();
+    if (!usableSpace.isPresent() || usableSpace.getAsLong() - estimatedSize >= reserve) {
+      return 0;
+    }
+    long missing = estimatedSize + reserve - usableSpace.getAsLong();
+    if (TrashBinConfig.LOW_SPACE_POLICY_EVICT.equals(config.getLowSpacePolicy())) {
+      LOG.info("{} bytes are missing to write snapshot of repository {}, evicting oldest entries", missing, repositoryId);
+      return evictOldest(missing, Collections.singleton(repositoryId), config, "space") >= missing ? 0 : missing;
+    }
+    if (TrashBinConfig.LOW_SPACE_POLICY_FAIL.equals(config.getLowSpacePolicy())) {
+      return missing;
+    }
+    LOG.warn("{} bytes of the free space reserve will be used by the snapshot of repository {}", missing, repositoryId);
+    return 0;
+  }
+
+  /**
+   * Acquires a slot for the export of the repository. If too many exports are running and waiting, the configured
+   * policy decides: the export waits nevertheless, the deletion fails or {@code false} is returned, so that the
+   * repository is staged and archived in the background instead.
+   */
+  private boolean admitExport(Repository repository, TrashBinConfig config) {
+    String policy = config.getExportSaturationPolicy();
+    long start = System.nanoTime();
+    try {
+      if (exports.acquire(config.getMaxConcurrentExports(), config.getMaxQueuedExports(), TrashBinConfig.SATURATION_POLICY_WAIT.equals(policy))) {
+        metrics.exportAdmitted(Duration.ofNanos(System.nanoTime() - start));
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RepositoryTrashBinException(entity(repository).build(), "Interrupted while waiting for export", e);
+    }
+    metrics.exportRejected(policy);
+    if (TrashBinConfig.SATURATION_POLICY_FAIL.equals(policy)) {
+      throw new RepositoryTrashBinException(
+        entity(repository).build(),
+        "Too many repositories are moved to the trash bin at the same time"
+      );
+    }
+    LOG.info("too many exports running, not exporting repository {}", repository);
+    return false;
+  }
+
+  private SnapshotCodec getCodec(TrashBinConfig config) {
+    return config.getCompression() == null ? SnapshotCodec.NONE : SnapshotCodec.valueOf(config.getCompression());
+  }
+
+  private boolean exportSnapshot(Repository repository, TrashBinEntry entry, TrashBinConfig config) {
+    if (entry.getStorage() == StorageMode.CHUNKED && archiveDirectory(repository, entry)) {
+      return true;
+    }
+    // the export is a compressed archive already, compressing it again would cost time without saving space
+    entry.setCodec(SnapshotCodec.NONE);
+    createRepositoryStore().put(repository.getId(), repository);
+    entryCache.put(repository.getId(), entry);
+    indexEntry(repository.getId(), entry);
+    addToExpiryIndex(repository.getId(), entry);
+    long start = System.nanoTime();
+    SnapshotBlobs.WrittenSnapshot snapshot;
+    try {
+      snapshot = snapshots.write(repository.getId(), entry, config.getCompressionLevel(), output -> exporter.export(repository, output, ""));
+    } catch (IOException e) {
+      metrics.failed("export", e);
+      // the repository will not be deleted, so the incomplete entry must not stay in the trash bin
+      purge(repository.getId(), createRepositoryStore());
       throw new RepositoryTrashBinException(
         entity(repository).build(),
         "Failed to store repository in trash bin",
         e
       );
     }
+    metrics.snapshotWritten(SnapshotFormat.EXPORT, Duration.ofNanos(System.nanoTime() - start), snapshot.getSize());
+    return completeSnapshot(repository.getId(), snapshot);
+  }
+
+  /**
+   * Keeps the linked copy of the repository directory as snapshot. Returns {@code false}, if the directory cannot be
+   * copied, for example because the repository is not stored in a directory, so that the repository is exported
+   * instead.
+   */
+  private boolean keepDirectory(Repository repository, TrashBinEntry entry) {
+    long start = System.nanoTime();
+    long size;
+    try {
+      staging.stage(repository);
+      size = staging.size(repository.getId());
+    } catch (IOException e) {
+      metrics.failed("stage", e);
+      LOG.warn("could not keep directory of repository {}, falling back to export", repository, e);
+      staging.remove(repository.getId());
+      return false;
+    }
+    metrics.snapshotWritten(SnapshotFormat.DIRECTORY, Duration.ofNanos(System.nanoTime() - start), size);
+    entry.setFormat(SnapshotFormat.DIRECTORY);
+    entry.setSize(size);
+    createRepositoryStore().put(repository.getId(), repository);
+    entryCache.put(repository.getId(), entry);
+    indexEntry(repository.getId(), entry);
+    addToExpiryIndex(repository.getId(), entry);
+    updateUsage(size);
+    return true;
+  }
+
+  /**
+   * Writes the archive of the repository directory instead of the export for chunked snapshots. The export is
+   * compressed as a whole, so two exports of similar repositories would not share any chunks, whereas the files in the
+   * uncompressed archive do. Returns {@code false}, if the directory cannot be staged, so that the repository is
+   * exported instead.
+   */
+  private boolean archiveDirectory(Repository repository, TrashBinEntry entry) {
+    try {
+      stage(repository, entry);
+    } catch (IOException e) {
+      LOG.warn("could not archive directory of repository {}, falling back to export", repository, e);
+      return false;
+    }
+    if (!writeStagedSnapshot(repository.getId())) {
+      // the repository will not be deleted, so the incomplete entry must not stay in the trash bin
+      purge(repository.getId(), createRepositoryStore());
+      throw new RepositoryTrashBinException(
+        entity(repository).build(),
+        "Failed to store repository in trash bin"
+      );
+    }
+    return true;
+  }
+
+  /**
+   * Stages the repository for the batch of a burst. Returns {@code false}, if the directory cannot be staged, so that
+   * the repository is exported instead.
+   */
+  private boolean stageForBatch(Repository repository, TrashBinEntry entry) {
+    try {
+      stage(repository, entry);
+      return true;
+    } catch (IOException e) {
+      LOG.warn("could not stage directory of repository {} for batch, falling back to export", repository, e);
+      return false;
+    }
+  }
+
+  private void stageSnapshot(Repository repository, TrashBinEntry entry) {
+    try {
+      stage(repository, entry);
+    } catch (IOException e) {
+      throw new RepositoryTrashBinException(
+        entity(repository).build(),
+        "Failed to stage repository for trash bin",
+        e
+      );
+    }
+  }
+
+  private void stage(Repository repository, TrashBinEntry entry) throws IOException {
+    try {
+      staging.stage(repository);
+    } catch (IOException e) {
+      metrics.failed("stage", e);
+      staging.remove(repository.getId());
+      throw e;
+    }
+    entry.setStatus(SnapshotStatus.PENDING);
+    entry.setFormat(SnapshotFormat.ARCHIVE);
+    createRepositoryStore().put(repository.getId(), repository);
+    entryCache.put(repository.getId(), entry);
+    indexEntry(repository.getId(), entry);
+    addToExpiryIndex(repository.getId(), entry);
+  }
+
+  public void resumePendingSnapshots() {
+    entryCache.getAll().forEach((id, entry) -> {
+      if (entry.getStatus() == SnapshotStatus.PENDING) {
+        snapshotExecutor.execute(() -> finalizeSnapshot(id));
+      }
+    });
+  }
+
+  private void finalizeSnapshot(String repositoryId) {
+    if (!hasSpaceForArchive(repositoryId, configAdapter.getConfiguration())) {
+      return;
+    }
+    boolean completed;
+    try {
+      completed = locks.call(
+        repositoryId,
+        LOCK_TIMEOUT,
+        () -> journal.record(repositoryId, TrashBinJournal.Operation.FINALIZE, () -> writeStagedSnapshot(repositoryId))
+      );
+    } catch (ConcurrentModificationException e) {
+      LOG.warn("could not finalize snapshot of repository {}, because the entry is locked; it stays pending", repositoryId);
+      return;
+    }
+    if (completed) {
+      enforceQuota(repositoryId);
+    }
+  }
+
+  /**
+   * Writes the snapshots of repositories staged during a burst of deletions with a bounded number of threads. The
+   * used space is updated and the quota is enforced once for the whole batch.
+   */
+  private void finalizeBatch(List<String> repositoryIds) {
+    LOG.info("writing snapshots of {} repositories deleted in a burst", repositoryIds.size());
+    AtomicLong storedBytes = new AtomicLong();
+    List<String> completed = Collections.synchronizedList(new ArrayList<>());
+    TrashBinConfig config = configAdapter.getConfiguration();
+    // failures are logged by the runner, the affected entries stay pending and are resumed on the next start
+    bulkRunner.runInBackground(
+      repositoryIds,
+      repositoryId -> {
+        if (hasSpaceForArchive(repositoryId, config) && locks.call(repositoryId, LOCK_TIMEOUT, () -> journal.record(repositoryId, TrashBinJournal.Operation.FINALIZE, () -> writeStagedSnapshot(repositoryId, storedBytes::addAndGet)))) {
+          completed.add(repositoryId);
+        }
+      }
+    );
+    if (!completed.isEmpty()) {
+      updateUsage(storedBytes.get());
+      enforceQuota(completed);
+    }
+  }
+
+  /**
+   * Flushes the snapshots collected during a burst of deletions immediately.
+   */
+  void flushBatch() {
+    batch.flush();
+  }
+
+  /**
+   * Stops the thread collecting the repositories deleted in a burst, when the server is shut down. Repositories, whose
+   * snapshots have not been written yet, stay pending and are finalized after the next start.
+   */
+  @Override
+  public void close() {
+    batch.close();
+  }
+
+  private boolean writeStagedSnapshot(String repositoryId) {
+    return writeStagedSnapshot(repositoryId, this::updateUsage);
+  }
+
+  private boolean writeStagedSnapshot(String repositoryId, LongConsumer usageUpdate) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    Optional<Path> stagedSnapshot = staging.find(repositoryId);
+    if (entry == null || entry.getStatus() != SnapshotStatus.PENDING || !stagedSnapshot.isPresent()) {
+      LOG.debug("skipping finalization of snapshot for repository {}, because it is no longer pending", repositoryId);
+      return false;
+    }
+
+    int compressionLevel = configAdapter.getConfiguration().getCompressionLevel();
+    long start = System.nanoTime();
+    SnapshotBlobs.WrittenSnapshot snapshot;
+    try {
+      snapshot = snapshots.write(repositoryId, entry, compressionLevel, output -> DirectoryArchive.write(stagedSnapshot.get(), output));
+    } catch (IOException e) {
+      metrics.failed("archive", e);
+      LOG.error("failed to finalize snapshot of repository {}, keeping staged copy", repositoryId, e);
+      snapshots.delete(repositoryId, entry);
+      updateStatus(repositoryId, SnapshotStatus.FAILED);
+      return false;
+    }
+
+    metrics.snapshotWritten(SnapshotFormat.ARCHIVE, Duration.ofNanos(System.nanoTime() - start), snapshot.getSize());
+    if (completeSnapshot(repositoryId, snapshot, usageUpdate)) {
+      staging.remove(repositoryId);
+      return true;
+    }
+    snapshots.delete(repositoryId, entry);
+    return false;
+  }
+
+  private boolean updateStatus(String repositoryId, SnapshotStatus status) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null) {
+      return false;
+    }
+    entry.setStatus(status);
+    entryCache.put(repositoryId, entry);
+    indexEntry(repositoryId, entry);
+    return true;
+  }
+
+  private boolean completeSnapshot(String repositoryId, SnapshotBlobs.WrittenSnapshot snapshot) {
+    return completeSnapshot(repositoryId, snapshot, this::updateUsage);
+  }
+
+  private boolean completeSnapshot(String repositoryId, SnapshotBlobs.WrittenSnapshot snapshot, LongConsumer usageUpdate) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null) {
+      return false;
+    }
+    entry.setStatus(SnapshotStatus.READY);
+    entry.setSize(snapshot.getSize());
+    entry.setChecksum(snapshot.getChecksum());
+    entry.setUncompressedSize(snapshot.getUncompressedSize());
+    entry.setVerifiedAt(Instant.now());
+    entryCache.put(repositoryId, entry);
+    indexEntry(repositoryId, entry);
+    usageUpdate.accept(snapshot.getStoredBytes());
+    return true;
   }
 
   public void restore(String repositoryId) {
     checkPermission();
-    ConfigurationEntryStore<TrashBinEntry> entryStore = createStore();
-    BlobStore blobStore = createBlobStore();
+    restore(repositoryId, bytes -> {});
+  }
 
+  public RestoreTask startRestore(String repositoryId) {
+    checkPermission();
+    TrashBinEntry entry = getRestorableEntry(repositoryId, createRepositoryStore());
+    return restoreTasks.submit(entry, task -> restore(repositoryId, task::addBytesProcessed));
+  }
+
+  public RestoreTask getRestoreTask(String taskId) {
+    checkPermission();
+    return restoreTasks.get(taskId).orElseThrow(() -> notFound(entity("RestoreTask", taskId)));
+  }
+
+  /**
+   * Returns the uncompressed snapshot of the entry for the download. Snapshots kept as directory, pending and damaged
+   * snapshots cannot be downloaded.
+   */
+  public SnapshotDownload getSnapshot(String repositoryId) {
+    checkPermission();
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null) {
+      throw notFound(entity(Repository.class, repositoryId));
+    }
+    if (entry.getStatus() != SnapshotStatus.READY || entry.getFormat() == SnapshotFormat.DIRECTORY) {
+      throw new RepositoryTrashBinException(
+        entity(Repository.class, repositoryId).build(),
+        "Snapshot of repository is not available for download"
+      );
+    }
+    long length;
     try {
-      importer.importFromStream(entryStore.get(repositoryId).getRepository(), blobStore.get(repositoryId).getInputStream(), "");
-    } catch (IOException e) {
+      length = snapshots.getLength(repositoryId, entry);
+    } catch (FileNotFoundException e) {
+      throw notFound(entity(Repository.class, repositoryId));
+    }
+    return new SnapshotDownload(entry, length, (offset, rangeLength, output) -> snapshots.transfer(repositoryId, entry, offset, rangeLength, output));
+  }
+
+  private TrashBinEntry getRestorableEntry(String repositoryId, DataStore<Repository> repositoryStore) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null) {
+      throw notFound(entity(Repository.class, repositoryId));
+    }
+    if (repositoryStore.get(repositoryId) == null) {
+      throw new RepositoryTrashBinException(
+        entity(Repository.class, repositoryId).build(),
+        "Repository of trash bin entry is missing"
+      );
+    }
+    if (entry.getStatus() == SnapshotStatus.PENDING) {
+      throw new RepositoryTrashBinException(
+        entity(Repository.class, repositoryId).build(),
+        "Snapshot of repository is not finalized yet"
+      );
+    }
+    if (entry.getStatus() == SnapshotStatus.CORRUPT) {
+      throw new RepositoryTrashBinException(
+        entity(Repository.class, repositoryId).build(),
+        "Snapshot of repository is damaged"
+      );
+    }
+    return entry;
+  }
+
+  private void restore(String repositoryId, LongConsumer progress) {
+    locks.run(
+      repositoryId,
+      TrashBinLocks.NO_WAIT,
+      () -> journal.record(repositoryId, TrashBinJournal.Operation.RESTORE, () -> restoreEntry(repositoryId, progress))
+    );
+  }
+
+  private void restoreEntry(String repositoryId, LongConsumer progress) {
+    DataStore<Repository> repositoryStore = createRepositoryStore();
+    TrashBinEntry entry = getRestorableEntry(repositoryId, repositoryStore);
+    Repository repository = repositoryStore.get(repositoryId);
+
+    long start = System.nanoTime();
+    try {
+      if (entry.getFormat() == SnapshotFormat.EXPORT) {
+        try (InputStream snapshot = snapshots.open(repositoryId, entry, progress)) {
+          importer.importFromStream(repository, snapshot, "");
+        }
+      } else {
+        restoreFromDirectory(repositoryId, repository, entry, progress);
+      }
+    } catch (IOException | UncheckedIOException e) {
+      metrics.failed("restore", e);
+      if (isChecksumMismatch(e)) {
+        LOG.error("snapshot of repository {} is damaged, marking trash bin entry as corrupt", repositoryId, e);
+        updateStatus(repositoryId, SnapshotStatus.CORRUPT);
+      }
       throw new RepositoryTrashBinException(
         entity(Repository.class, repositoryId).build(),
         "Failed to restore repository from trash bin",
         e
       );
     }
-    entryStore.remove(repositoryId);
-    blobStore.remove(repositoryId);
+    metrics.restored(Duration.ofNanos(System.nanoTime() - start), entry.getSize());
+    long size = deleteSnapshot(repositoryId, entry);
+    entryCache.remove(repositoryId);
+    unindexEntry(repositoryId);
+    removeFromExpiryIndex(repositoryId);
+    repositoryStore.remove(repositoryId);
+    staging.remove(repositoryId);
+    updateUsage(-size);
+  }
+
+  private void restoreFromDirectory(String repositoryId, Repository repository, TrashBinEntry entry, LongConsumer progress) throws IOException {
+    Optional<Path> stagedSnapshot = staging.find(repositoryId);
+    boolean fromStagedCopy = entry.getFormat() == SnapshotFormat.DIRECTORY
+      || (entry.getStatus() == SnapshotStatus.FAILED && stagedSnapshot.isPresent());
+    // the repository is removed again by the repository manager, if the archive turns out to be damaged
+    repositoryManager.create(repository, created -> {
+      try {
+        if (entry.getFormat() == SnapshotFormat.DIRECTORY) {
+          staging.restore(created, stagedSnapshot.orElseThrow(() -> new NoSuchFileException("staged directory of repository " + repositoryId)));
+        } else if (fromStagedCopy) {
+          staging.restore(created, stagedSnapshot.get());
+        } else {
+          try (InputStream archive = snapshots.open(repositoryId, entry, progress)) {
+            staging.restore(created, archive);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  private boolean isChecksumMismatch(Exception e) {
+    return e instanceof VerifyingInputStream.ChecksumMismatchException
+      || e.getCause() instanceof VerifyingInputStream.ChecksumMismatchException;
+  }
+
+  /**
+   * Reads the snapshots, which have not been verified for the longest time, and compares them with their checksums,
+   * until the configured amount of data has been read. Damaged or missing snapshots are marked as corrupt. Entries,
+   * which are locked by another operation, are skipped. Returns the number of entries marked as corrupt.
+   */
+  public int scrub() {
+    TrashBinConfig config = configAdapter.getConfiguration();
+    long budget = config.getScrubMegabytesPerRun() * MEGABYTE;
+    if (budget <= 0) {
+      return 0;
+    }
+    RateLimiter bandwidthLimiter = config.getScrubMegabytesPerSecond() > 0 ? RateLimiter.create(config.getScrubMegabytesPerSecond() * 1024.0) : null;
+    List<Map.Entry<String, TrashBinEntry>> candidates = entryCache.getAll().entrySet().stream()
+      .filter(candidate -> candidate.getValue().getStatus() == SnapshotStatus.READY && candidate.getValue().getChecksum() != null)
+      .sorted(Comparator.comparing(candidate -> lastVerification(candidate.getValue())))
+      .collect(Collectors.toList());
+
+    long read = 0;
+    int corrupt = 0;
+    for (Map.Entry<String, TrashBinEntry> candidate : candidates) {
+      if (read >= budget) {
+        break;
+      }
+      read += candidate.getValue().getSize();
+      try {
+        if (!verifySnapshot(candidate.getKey(), bandwidthLimiter)) {
+          corrupt++;
+        }
+      } catch (ConcurrentModificationException e) {
+        LOG.debug("skipping verification of trash bin entry of repository {}, because it is locked", candidate.getKey());
+      }
+    }
+    LOG.info("verified snapshots of trash bin with {} bytes, found {} damaged snapshots", Math.min(read, budget), corrupt);
+    return corrupt;
+  }
+
+  private Instant lastVerification(TrashBinEntry entry) {
+    return entry.getVerifiedAt() == null ? entry.getDeletedAt() : entry.getVerifiedAt();
+  }
+
+  /**
+   * Reads the snapshot completely and returns {@code false}, if it has been marked as corrupt. The snapshot is read
+   * without holding the lock of the entry, so that the entry can be restored or deleted during the throttled read. The
+   * lock is taken only to record the result.
+   */
+  private boolean verifySnapshot(String repositoryId, RateLimiter bandwidthLimiter) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null || entry.getStatus() != SnapshotStatus.READY) {
+      return true;
+    }
+    LongConsumer throttle = bytes -> {
+      if (bandwidthLimiter != null) {
+        bandwidthLimiter.acquire((int) Math.max(1, bytes / 1024));
+      }
+    };
+    IOException damage = null;
+    try (InputStream snapshot = snapshots.open(repositoryId, entry, throttle)) {
+      ByteStreams.exhaust(snapshot);
+    } catch (VerifyingInputStream.ChecksumMismatchException | FileNotFoundException e) {
+      damage = e;
+    } catch (IOException e) {
+      LOG.warn("could not verify snapshot of repository {}", repositoryId, e);
+      return true;
+    }
+    IOException result = damage;
+    return locks.call(repositoryId, TrashBinLocks.NO_WAIT, () -> recordVerification(repositoryId, entry, result));
+  }
+
+  /**
+   * Records the result of the verification, if the entry has not been changed in the meantime. A snapshot, which has
+   * been removed or replaced while it was read, would otherwise be marked as damaged.
+   */
+  private boolean recordVerification(String repositoryId, TrashBinEntry verified, IOException damage) {
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    if (entry == null || entry.getStatus() != SnapshotStatus.READY || !Objects.equals(entry.getChecksum(), verified.getChecksum())) {
+      LOG.debug("trash bin entry of repository {} has been changed during verification, ignoring result", repositoryId);
+      return true;
+    }
+    if (damage != null) {
+      metrics.failed("scrub", damage);
+      LOG.error("snapshot of repository {} is damaged, marking trash bin entry as corrupt", repositoryId, damage);
+      updateStatus(repositoryId, SnapshotStatus.CORRUPT);
+      return false;
+    }
+    entry.setVerifiedAt(Instant.now());
+    entryCache.put(repositoryId, entry);
+    return true;
   }
 
   public void delete(String repositoryId) {
     checkPermission();
-    createBlobStore().remove(repositoryId);
-    createStore().remove(repositoryId);
+    remove(repositoryId);
+  }
+
+  private void remove(String repositoryId) {
+    locks.run(repositoryId, TrashBinLocks.NO_WAIT, () -> purge(repositoryId, createRepositoryStore()));
+  }
+
+  /**
+   * Purges the entry while holding its lock, if it still exists and still matches the condition under which it has
+   * been selected for the purge. Otherwise nothing is freed.
+   */
+  private long purgeIf(String repositoryId, DataStore<Repository> repositoryStore, Predicate<TrashBinEntry> condition) {
+    return locks.call(repositoryId, TrashBinLocks.NO_WAIT, () -> {
+      TrashBinEntry entry = entryCache.get(repositoryId);
+      if (entry == null || !condition.test(entry)) {
+        LOG.debug("skipping purge of trash bin entry of repository {}, because it has changed", repositoryId);
+        return 0L;
+      }
+      return purge(repositoryId, repositoryStore);
+    });
+  }
+
+  /**
+   * Deletes the stored snapshot and returns the number of freed bytes. Kept directories are freed together with the
+   * staging directory.
+   */
+  private long deleteSnapshot(String repositoryId, TrashBinEntry entry) {
+    long size = snapshots.delete(repositoryId, entry);
+    if (entry != null && entry.getFormat() == SnapshotFormat.DIRECTORY) {
+      size += entry.getSize();
+    }
+    return size;
+  }
+
+  private long purge(String repositoryId, DataStore<Repository> repositoryStore) {
+    return journal.record(repositoryId, TrashBinJournal.Operation.REMOVE, () -> purgeSteps(repositoryId, repositoryStore));
+  }
+
+  private long purgeSteps(String repositoryId, DataStore<Repository> repositoryStore) {
+    long size = deleteSnapshot(repositoryId, entryCache.get(repositoryId));
+    staging.remove(repositoryId);
+    synchronized (entryCache) {
+      entryCache.remove(repositoryId);
+      repositoryStore.remove(repositoryId);
+    }
+    unindexEntry(repositoryId);
+    removeFromExpiryIndex(repositoryId);
+    updateUsage(-size);
+    return size;
   }
 
-  public void deleteAllExpired() {
+  /**
+   * Checks the entries, whose operations have been interrupted by a crash or a restart, and completes or rolls back
+   * these operations. Only the entries recorded in the journal are checked, so the pass is fast even for a large trash
+   * bin.
+   */
+  public ReconciliationReport reconcile() {
+    ReconciliationReport report = new ReconciliationReport();
+    journal.getAll().forEach((repositoryId, intent) -> {
+      try {
+        locks.run(repositoryId, LOCK_TIMEOUT, () -> {
+          reconcile(repositoryId, intent.getOperation(), report);
+          journal.finish(repositoryId);
+        });
+      } catch (Exception e) {
+        LOG.error("failed to reconcile interrupted {} of trash bin entry for repository {}", intent.getOperation(), repositoryId, e);
+      }
+    });
+    if (report.hasChanges()) {
+      usage.initialize(computeUsedBytes());
+      version.incrementAndGet();
+      LOG.info(
+        "reconciled interrupted trash bin operations: {} completed, {} rolled back, {} quarantined",
+        report.getCompleted(), report.getRolledBack(), report.getQuarantined()
+      );
+    }
+    return report;
+  }
+
+  private void reconcile(String repositoryId, TrashBinJournal.Operation operation, ReconciliationReport report) {
+    DataStore<Repository> repositoryStore = createRepositoryStore();
+    TrashBinEntry entry = entryCache.get(repositoryId);
+    switch (operation) {
+      case ADD:
+        reconcileAdd(repositoryId, entry, repositoryStore, report);
+        break;
+      case FINALIZE:
+        if (entry != null && entry.getStatus() == SnapshotStatus.PENDING) {
+          // the snapshot is written again by the resumed finalization
+          snapshots.delete(repositoryId, entry);
+          report.rolledBack();
+        }
+        break;
+      case RESTORE:
+        if (entry != null && repositoryExists(repositoryId, entry, repositoryStore)) {
+          purge(repositoryId, repositoryStore);
+          report.completed();
+        }
+        break;
+      case REMOVE:
+        purge(repositoryId, repositoryStore);
+        report.completed();
+        break;
+      default:
+        LOG.warn("unknown operation {} in journal of trash bin", operation);
+    }
+  }
+
+  private void reconcileAdd(String repositoryId, TrashBinEntry entry, DataStore<Repository> repositoryStore, ReconciliationReport report) {
+    if (entry != null && entry.getStatus() == SnapshotStatus.PENDING) {
+      // staged snapshots are finalized later on, only the expiry index may lack the entry
+      addToExpiryIndex(repositoryId, entry);
+      report.completed();
+    } else if (entry == null || repositoryExists(repositoryId, entry, repositoryStore)) {
+      // the repository has not been deleted, so the entry is removed together with any partial snapshot
+      purge(repositoryId, repositoryStore);
+      report.rolledBack();
+    } else if (entry.getSize() > 0) {
+      // the size is recorded only after the snapshot has been written completely
+      report.completed();
+    } else {
+      LOG.warn("snapshot of deleted repository {} may be incomplete, marking trash bin entry as failed", repositoryId);
+      updateStatus(repositoryId, SnapshotStatus.FAILED);
+      addToExpiryIndex(repositoryId, entry);
+      report.quarantined();
+    }
+  }
+
+  /**
+   * Looks the repository up by its namespace and name, because a restored repository is created with a new id.
+   */
+  private boolean repositoryExists(String repositoryId, TrashBinEntry entry, DataStore<Repository> repositoryStore) {
+    Repository repository = repositoryStore.get(repositoryId);
+    NamespaceAndName namespaceAndName = repository != null
+      ? repository.getNamespaceAndName()
+      : new NamespaceAndName(entry.getNamespace(), entry.getName());
+    return repositoryManager.get(namespaceAndName) != null;
+  }
+
+  public CleanupStatistics deleteAllExpired() {
+    TrashBinConfig config = configAdapter.getConfiguration();
+    initializeExpiryIndex();
+    Instant threshold = Instant.now().minus(getRetentionTime(config));
+    List<String> expired = expiryIndex.getDeletedBefore(threshold);
+    DataStore<Repository> repositoryStore = createRepositoryStore();
+    CleanupStatistics statistics = cleanupEngine.purge(
+      "expired",
+      expired,
+      config,
+      id -> purgeIf(id, repositoryStore, entry -> entry.getDeletedAt().isBefore(threshold))
+    );
+    metrics.cleanupFinished("expired", statistics);
+    return statistics;
+  }
+
+  public long getUsedBytes() {
+    initializeUsage();
+    return usage.getTotalBytes();
+  }
+
+  /**
+   * Evicts the oldest entries, if the trash bin uses more space than allowed by the high watermark of the quota, until
+   * the usage drops below the low watermark. The entry with the given id has just been added and is never evicted.
+   */
+  private void enforceQuota(String addedRepositoryId) {
+    enforceQuota(Collections.singleton(addedRepositoryId));
+  }
+
+  private synchronized void enforceQuota(Collection<String> addedRepositoryIds) {
     TrashBinConfig config = configAdapter.getConfiguration();
-    ArrayList<String> toBeDeleted = new ArrayList<>();
-    createStore().getAll().values().forEach(entry -> {
-      if (shouldDeleteEntry(config, entry)) {
-        toBeDeleted.add(entry.getRepository().getId());
+    if (config.getQuotaMegabytes() <= 0) {
+      return;
+    }
+    long quota = config.getQuotaMegabytes() * MEGABYTE;
+    long highWatermark = quota * config.getQuotaHighWatermark() / 100;
+    long lowWatermark = quota * Math.min(config.getQuotaLowWatermark(), config.getQuotaHighWatermark()) / 100;
+    long used = getUsedBytes();
+    if (used <= highWatermark) {
+      return;
+    }
+
+    LOG.info("trash bin exceeds high watermark of quota, evicting oldest entries");
+    evictOldest(used - lowWatermark, addedRepositoryIds, config, "quota");
+  }
+
+  /**
+   * Purges the oldest entries, until their snapshots sum up to the given number of bytes. Pending entries and the
+   * entries with the given ids are never evicted. Returns the number of freed bytes.
+   */
+  private synchronized long evictOldest(long bytesToFree, Collection<String> keptRepositoryIds, TrashBinConfig config, String reason) {
+    initializeExpiryIndex();
+    DataStore<Repository> repositoryStore = createRepositoryStore();
+    BlobStore blobStore = createBlobStore();
+    List<String> evicted = new ArrayList<>();
+    long selected = 0;
+    for (String repositoryId : expiryIndex.getOldestFirst()) {
+      if (selected >= bytesToFree) {
+        break;
+      }
+      TrashBinEntry entry = entryCache.get(repositoryId);
+      if (keptRepositoryIds.contains(repositoryId) || entry == null || entry.getStatus() == SnapshotStatus.PENDING) {
+        continue;
+      }
+      evicted.add(repositoryId);
+      selected += entry.getSize() > 0 ? entry.getSize() : blobStore.getOptional(repositoryId).map(Blob::getSize).orElse(0L);
+    }
+
+    LOG.info("evicting {} oldest entries of trash bin ({})", evicted.size(), reason);
+    CleanupStatistics statistics = cleanupEngine.purge(
+      reason,
+      evicted,
+      config,
+      id -> purgeIf(id, repositoryStore, entry -> entry.getStatus() != SnapshotStatus.PENDING)
+    );
+    metrics.cleanupFinished(reason, statistics);
+    return statistics.getBytesFreed();
+  }
+
+  private void indexEntry(String repositoryId, TrashBinEntry entry) {
+    index.put(repositoryId, entry);
+    version.incrementAndGet();
+  }
+
+  private void unindexEntry(String repositoryId) {
+    index.remove(repositoryId);
+    version.incrementAndGet();
+  }
+
+  private void updateUsage(long delta) {
+    version.incrementAndGet();
+    if (usage.isInitialized()) {
+      usage.add(delta);
+    } else {
+      // the blob store already contains the change, so the initial total must not be adjusted
+      initializeUsage();
+    }
+  }
+
+  private void initializeUsage() {
+    if (!usage.isInitialized()) {
+      usage.initialize(computeUsedBytes());
+    }
+  }
+
+  private long computeUsedBytes() {
+    long keptDirectories = entryCache.getAll().values().stream()
+      .filter(entry -> entry.getFormat() == SnapshotFormat.DIRECTORY)
+      .mapToLong(TrashBinEntry::getSize)
+      .sum();
+    return snapshots.getStoredBytes() + keptDirectories;
+  }
+
+  public Optional<Instant> getNextExpiration() {
+    initializeExpiryIndex();
+    Duration retentionTime = getRetentionTime(configAdapter.getConfiguration());
+    return expiryIndex.getOldestDeletion().map(deletedAt -> deletedAt.plus(retentionTime));
+  }
+
+  private Duration getRetentionTime(TrashBinConfig config) {
+    return Duration.ofDays(Integer.parseInt(config.getRetentionTime()));
+  }
+
+  private void addToExpiryIndex(String repositoryId, TrashBinEntry entry) {
+    initializeExpiryIndex();
+    expiryIndex.add(repositoryId, entry.getDeletedAt());
+  }
+
+  private void removeFromExpiryIndex(String repositoryId) {
+    initializeExpiryIndex();
+    expiryIndex.remove(repositoryId);
+  }
+
+  private void initializeExpiryIndex() {
+    if (!expiryIndex.isInitialized()) {
+      expiryIndex.rebuild(entryCache.getAll());
+    }
+  }
+
+  public List<String> select(TrashBinSelection selection) {
+    checkPermission();
+    if (selection.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<String, TrashBinEntry> entries = entryCache.getAll();
+    List<String> selected = new ArrayList<>();
+    entries.forEach((repositoryId, entry) -> {
+      if (selection.matches(repositoryId, entry)) {
+        selected.add(repositoryId);
+      }
+    });
+    // unknown ids are kept, so that they are reported as not found
+    selection.getRepositoryIds().stream().filter(repositoryId -> !entries.containsKey(repositoryId)).forEach(selected::add);
+    return selected;
+  }
+
+  public void deleteBulk(Collection<String> repositoryIds, Consumer<BulkResult> results) {
+    checkPermission();
+    bulkRunner.run(repositoryIds, this::removeExisting, results);
+  }
+
+  public void restoreBulk(Collection<String> repositoryIds, Consumer<BulkResult> results) {
+    checkPermission();
+    bulkRunner.run(repositoryIds, repositoryId -> restore(repositoryId, bytes -> {}), results);
+  }
+
+  private void removeExisting(String repositoryId) {
+    locks.run(repositoryId, TrashBinLocks.NO_WAIT, () -> {
+      if (entryCache.get(repositoryId) == null) {
+        throw notFound(entity(Repository.class, repositoryId));
       }
+      purge(repositoryId, createRepositoryStore());
     });
-    toBeDeleted.forEach(this::delete);
   }
 
-  private boolean shouldDeleteEntry(TrashBinConfig config, TrashBinEntry r) {
-    return r.getDeletedAt().isBefore(Instant.now().minus(Integer.parseInt(config.getRetentionTime()), ChronoUnit.DAYS));
+  /**
+   * Drops all cached entries, so that they are read from the store again. This is needed only, if the store has been
+   * changed without this manager.
+   */
+  public void invalidateCache() {
+    entryCache.invalidate();
+    index.invalidate();
+    version.incrementAndGet();
   }
 
-  public void deleteAll() {
-    ArrayList<String> toBeDeleted = new ArrayList<>();
-    createStore().getAll().values().forEach(entry -> toBeDeleted.add(entry.getRepository().getId()));
-    toBeDeleted.forEach(this::delete);
+  /**
+   * Deletes all entries of the trash bin. Entries which are locked by another operation (e.g. a running restore) are
+   * skipped instead of aborting the deletion of the remaining entries; they are reported as failed result.
+   */
+  public void deleteAll(Consumer<BulkResult> results) {
+    deleteBulk(new ArrayList<>(entryCache.getAll().keySet()), results);
   }
 
-  private ConfigurationEntryStore<TrashBinEntry> createStore() {
-    return storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+  private DataStore<Repository> createRepositoryStore() {
+    return dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build();
   }
 
   private BlobStore createBlobStore() {
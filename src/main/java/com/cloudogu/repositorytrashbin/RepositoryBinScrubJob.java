@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.lifecycle.PrivilegedStartupAction;
+import sonia.scm.plugin.Extension;
+import sonia.scm.schedule.Scheduler;
+
+import jakarta.inject.Inject;
+
+/**
+ * Schedules the nightly verification of the snapshots in the trash bin. The amount of data read per night and the
+ * bandwidth are limited by the configuration, see {@link RepositoryBinManager#scrub()}.
+ */
+@Extension
+public class RepositoryBinScrubJob implements PrivilegedStartupAction {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RepositoryBinScrubJob.class);
+
+  static final String SCRUB_CRON = "0 0 4 * * ?";
+
+  private final Scheduler scheduler;
+  private final RepositoryBinManager binManager;
+
+  @Inject
+  public RepositoryBinScrubJob(Scheduler scheduler, RepositoryBinManager binManager) {
+    this.scheduler = scheduler;
+    this.binManager = binManager;
+  }
+
+  @Override
+  public void run() {
+    scheduler.schedule(SCRUB_CRON, this::scrub);
+  }
+
+  void scrub() {
+    try {
+      binManager.scrub();
+    } catch (Exception e) {
+      LOG.error("failed to verify snapshots of trash bin", e);
+    }
+  }
+}
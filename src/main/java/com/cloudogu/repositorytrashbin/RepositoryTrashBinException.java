@@ -23,6 +23,10 @@ import java.util.List;
 
 public class RepositoryTrashBinException extends ExceptionWithContext {
 
+  protected RepositoryTrashBinException(List<ContextEntry> context, String message) {
+    super(context, message);
+  }
+
   protected RepositoryTrashBinException(List<ContextEntry> context, String message, Exception cause) {
     super(context, message, cause);
   }
@@ -16,8 +16,13 @@
 
 package com.cloudogu.repositorytrashbin;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.google.common.hash.HashCode;
 import de.otto.edison.hal.Embedded;
-import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Link;
 import de.otto.edison.hal.Links;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
@@ -34,16 +39,37 @@ import sonia.scm.web.VndMediaType;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HEAD;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
-import java.util.Collection;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
@@ -54,6 +80,23 @@ import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 })
 public class RepositoryTrashBinResource {
 
+  static final String NDJSON = "application/x-ndjson";
+
+  private static final ObjectWriter BULK_RESULT_WRITER = new ObjectMapper()
+    .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+    .writerFor(BulkResult.class);
+
+  private static final ObjectWriter ENTRY_WRITER = new ObjectMapper()
+    .registerModule(new SimpleModule().addSerializer(Instant.class, ToStringSerializer.instance))
+    .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+    .writerFor(TrashBinEntryDto.class);
+
+  private static final CacheControl REVALIDATE = CacheControl.valueOf("private, no-cache");
+
+  private static final String ACCEPT_RANGES = "Accept-Ranges";
+  private static final String CONTENT_RANGE = "Content-Range";
+  private static final String REPR_DIGEST = "Repr-Digest";
+
   private final RepositoryBinManager binManager;
   private final Provider<ScmPathInfoStore> scmPathInfoStoreProvider;
 
@@ -66,15 +109,16 @@ public class RepositoryTrashBinResource {
   @GET
   @Path("")
   @Produces(APPLICATION_JSON)
-  @Operation(summary = "Get trash bin entries", description = "Returns a list of repository trash bin entries.", tags = "Repository Trash Bin")
+  @Operation(summary = "Get trash bin entries", description = "Returns a page of repository trash bin entries.", tags = "Repository Trash Bin")
   @ApiResponse(
     responseCode = "200",
     description = "success",
     content = @Content(
       mediaType = MediaType.APPLICATION_JSON,
-      schema = @Schema(implementation = HalRepresentation.class)
+      schema = @Schema(implementation = TrashBinEntryCollectionDto.class)
     )
   )
+  @ApiResponse(responseCode = "304", description = "not modified, the trash bin has not changed since the version of the If-None-Match header")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
   @ApiResponse(
@@ -85,16 +129,78 @@ public class RepositoryTrashBinResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public HalRepresentation getAll() {
-    return mapEntries(binManager.getAll());
+  public Response getAll(
+    @Context Request request,
+    @DefaultValue("0") @QueryParam("page") int page,
+    @DefaultValue("" + TrashBinQuery.DEFAULT_PAGE_SIZE) @QueryParam("pageSize") int pageSize,
+    @DefaultValue("deletedAt") @QueryParam("sortBy") String sortBy,
+    @DefaultValue("true") @QueryParam("desc") boolean desc,
+    @QueryParam("q") String filter,
+    @QueryParam("namespace") String namespace,
+    @QueryParam("deletedBy") String deletedBy
+  ) {
+    // the restore links depend on the permissions of the user, so they are part of the tag
+    EntityTag tag = new EntityTag(binManager.getVersion() + (RepositoryPermissions.create().isPermitted() ? "-r" : ""), true);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+    if (notModified != null) {
+      return notModified.cacheControl(REVALIDATE).build();
+    }
+    TrashBinQuery query = new TrashBinQuery(page, pageSize, TrashBinSortField.fromParameter(sortBy), desc, filter, namespace, deletedBy);
+    return Response.ok(mapEntries(query, binManager.getPage(query))).tag(tag).cacheControl(REVALIDATE).build();
+  }
+
+  @GET
+  @Path("stream")
+  @Produces(NDJSON)
+  @Operation(summary = "Stream trash bin entries", description = "Streams all repository trash bin entries matching the filters, one json object per line.", tags = "Repository Trash Bin")
+  @ApiResponse(
+    responseCode = "200",
+    description = "success, one json object per line for every entry",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = TrashBinEntryDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public StreamingOutput streamAll(
+    @DefaultValue("deletedAt") @QueryParam("sortBy") String sortBy,
+    @DefaultValue("true") @QueryParam("desc") boolean desc,
+    @QueryParam("q") String filter,
+    @QueryParam("namespace") String namespace,
+    @QueryParam("deletedBy") String deletedBy
+  ) {
+    TrashBinQuery query = new TrashBinQuery(0, TrashBinQuery.MAX_PAGE_SIZE, TrashBinSortField.fromParameter(sortBy), desc, filter, namespace, deletedBy);
+    String collectionLink = collectionLink();
+    boolean mayRestore = RepositoryPermissions.create().isPermitted();
+    Iterable<TrashBinEntry> entries = binManager.iterate(query);
+    return output -> {
+      for (TrashBinEntry entry : entries) {
+        output.write(ENTRY_WRITER.writeValueAsBytes(mapEntry(collectionLink, entry, mayRestore)));
+        output.write('\n');
+      }
+    };
   }
 
   @POST
   @Path("{repositoryId}/restore")
-  @Operation(summary = "Restore single trash bin entry", description = "Restores a deleted repository from the trash bin.", tags = "Repository Trash Bin")
+  @Produces(APPLICATION_JSON)
+  @Operation(summary = "Restore single trash bin entry", description = "Starts to restore a deleted repository from the trash bin in the background.", tags = "Repository Trash Bin")
   @ApiResponse(
-    responseCode = "204",
-    description = "no content"
+    responseCode = "202",
+    description = "restore has been started, the location header points to the restore task",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = RestoreTaskDto.class)
+    )
   )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
@@ -107,8 +213,104 @@ public class RepositoryTrashBinResource {
     )
   )
   public Response restore(@PathParam("repositoryId") String id) {
-    binManager.restore(id);
-    return Response.noContent().build();
+    RestoreTask task = binManager.startRestore(id);
+    String taskLink = restoreTaskLink(task);
+    return Response.accepted(RestoreTaskDto.from(task, Links.linkingTo().self(taskLink).build()))
+      .location(URI.create(taskLink))
+      .build();
+  }
+
+  @GET
+  @Path("restoreTasks/{taskId}")
+  @Produces(APPLICATION_JSON)
+  @Operation(summary = "Get restore task", description = "Returns the state of a restore running in the background.", tags = "Repository Trash Bin")
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = RestoreTaskDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no restore task with the given id available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public RestoreTaskDto getRestoreTask(@PathParam("taskId") String taskId) {
+    RestoreTask task = binManager.getRestoreTask(taskId);
+    return RestoreTaskDto.from(task, Links.linkingTo().self(restoreTaskLink(task)).build());
+  }
+
+  @GET
+  @Path("{repositoryId}/snapshot")
+  @Produces(MediaType.APPLICATION_OCTET_STREAM)
+  @Operation(
+    summary = "Download snapshot of trash bin entry",
+    description = "Streams the uncompressed snapshot of a deleted repository. A single byte range can be requested with the Range header to resume a download.",
+    tags = "Repository Trash Bin"
+  )
+  @ApiResponse(responseCode = "200", description = "success, the whole snapshot is sent")
+  @ApiResponse(responseCode = "206", description = "success, the requested range of the snapshot is sent")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no trash bin entry with a snapshot for the given id available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "416", description = "the requested range starts behind the end of the snapshot")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response downloadSnapshot(
+    @PathParam("repositoryId") String id,
+    @HeaderParam("Range") String range,
+    @HeaderParam("If-Range") String ifRange
+  ) {
+    return snapshotResponse(binManager.getSnapshot(id), range, ifRange, true);
+  }
+
+  @HEAD
+  @Path("{repositoryId}/snapshot")
+  @Produces(MediaType.APPLICATION_OCTET_STREAM)
+  @Operation(
+    summary = "Get size and checksum of snapshot",
+    description = "Returns the headers of the snapshot download with size and SHA-256 checksum, without reading the snapshot.",
+    tags = "Repository Trash Bin"
+  )
+  @ApiResponse(responseCode = "200", description = "success")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(responseCode = "404", description = "not found, no trash bin entry with a snapshot for the given id available")
+  @ApiResponse(responseCode = "500", description = "internal server error")
+  public Response getSnapshotHeaders(
+    @PathParam("repositoryId") String id,
+    @HeaderParam("Range") String range,
+    @HeaderParam("If-Range") String ifRange
+  ) {
+    return snapshotResponse(binManager.getSnapshot(id), range, ifRange, false);
   }
 
   @DELETE
@@ -138,7 +340,15 @@ public class RepositoryTrashBinResource {
   @Operation(summary = "Deletes all trash bin entries", description = "Deletes all repository trash bin entries.", tags = "Repository Trash Bin")
   @ApiResponse(
     responseCode = "204",
-    description = "no content"
+    description = "no content, all entries have been deleted"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "some entries could not be deleted, one json object with the result per line for every skipped entry",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BulkResult.class)
+    )
   )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
@@ -151,26 +361,213 @@ public class RepositoryTrashBinResource {
     )
   )
   public Response deleteAll() {
-    binManager.deleteAll();
-    return Response.noContent().build();
+    List<BulkResult> skipped = new ArrayList<>();
+    binManager.deleteAll(result -> {
+      if (!result.isSuccess()) {
+        skipped.add(result);
+      }
+    });
+    if (skipped.isEmpty()) {
+      return Response.noContent().build();
+    }
+    return Response.ok((StreamingOutput) output -> skipped.forEach(resultWriter(output)), NDJSON).build();
   }
 
-  private HalRepresentation mapEntries(Collection<TrashBinEntry> entries) {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStoreProvider.get().get(), RepositoryTrashBinResource.class);
-    List<TrashBinEntryDto> mappedEntries = entries.stream().map(e -> {
-      String deleteLink = linkBuilder.method("delete").parameters(e.getRepository().getId()).href();
-      String restoreLink = linkBuilder.method("restore").parameters(e.getRepository().getId()).href();
-      Links.Builder linksBuilder = Links.linkingTo()
-        .single(Link.link("delete", deleteLink));
+  @POST
+  @Path("bulk/restore")
+  @Consumes(APPLICATION_JSON)
+  @Produces(NDJSON)
+  @Operation(summary = "Restore multiple trash bin entries", description = "Restores all trash bin entries selected by ids or by a filter.", tags = "Repository Trash Bin")
+  @ApiResponse(
+    responseCode = "200",
+    description = "success, one json object with the result per line for every selected entry",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BulkResult.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public StreamingOutput restoreBulk(BulkRequestDto request) {
+    List<String> repositoryIds = binManager.select(request.toSelection());
+    return output -> binManager.restoreBulk(repositoryIds, resultWriter(output));
+  }
 
-      if (RepositoryPermissions.create().isPermitted()) {
-        linksBuilder.single(Link.link("restore", restoreLink));
+  @POST
+  @Path("bulk/delete")
+  @Consumes(APPLICATION_JSON)
+  @Produces(NDJSON)
+  @Operation(summary = "Delete multiple trash bin entries", description = "Deletes all trash bin entries selected by ids or by a filter.", tags = "Repository Trash Bin")
+  @ApiResponse(
+    responseCode = "200",
+    description = "success, one json object with the result per line for every selected entry",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BulkResult.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"manageTrashBin\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public StreamingOutput deleteBulk(BulkRequestDto request) {
+    List<String> repositoryIds = binManager.select(request.toSelection());
+    return output -> binManager.deleteBulk(repositoryIds, resultWriter(output));
+  }
+
+  /**
+   * Builds the response for the download of the snapshot. A range is only served, if the length of the snapshot is
+   * known and the If-Range header, if any, matches the checksum of the snapshot.
+   */
+  private Response snapshotResponse(SnapshotDownload download, String range, String ifRange, boolean withContent) {
+    Optional<ByteRange> byteRange = download.isLengthKnown() && matchesIfRange(download, ifRange)
+      ? ByteRange.parse(range, download.getLength())
+      : Optional.empty();
+    if (byteRange.isPresent() && !byteRange.get().isSatisfiable()) {
+      return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+        .header(CONTENT_RANGE, "bytes */" + download.getLength())
+        .build();
+    }
+
+    Response.ResponseBuilder response;
+    StreamingOutput content;
+    if (byteRange.isPresent()) {
+      ByteRange requested = byteRange.get();
+      response = Response.status(Response.Status.PARTIAL_CONTENT)
+        .header(CONTENT_RANGE, requested.toContentRange(download.getLength()))
+        .header(HttpHeaders.CONTENT_LENGTH, requested.getLength());
+      content = output -> download.write(requested.getOffset(), requested.getLength(), output);
+    } else {
+      response = Response.ok();
+      if (download.isLengthKnown()) {
+        response.header(HttpHeaders.CONTENT_LENGTH, download.getLength());
+      }
+      content = download::writeAll;
+    }
+    if (download.getChecksum() != null) {
+      response.tag(new EntityTag(download.getChecksum()))
+        .header(REPR_DIGEST, "sha-256=:" + Base64.getEncoder().encodeToString(HashCode.fromString(download.getChecksum()).asBytes()) + ":");
+    }
+    if (withContent) {
+      response.entity(content);
+    }
+    return response
+      .type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+      .header(ACCEPT_RANGES, download.isLengthKnown() ? "bytes" : "none")
+      .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + snapshotFileName(download) + "\"")
+      .build();
+  }
+
+  private boolean matchesIfRange(SnapshotDownload download, String ifRange) {
+    return ifRange == null || (download.getChecksum() != null && ifRange.trim().equals("\"" + download.getChecksum() + "\""));
+  }
+
+  private String snapshotFileName(SnapshotDownload download) {
+    String extension = download.getFormat() == SnapshotFormat.ARCHIVE ? ".zip" : ".tar.gz";
+    return download.getNamespace() + "-" + download.getName() + extension;
+  }
+
+  private Consumer<BulkResult> resultWriter(OutputStream output) {
+    return result -> {
+      try {
+        output.write(BULK_RESULT_WRITER.writeValueAsBytes(result));
+        output.write('\n');
+        output.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException("failed to write result of bulk operation", e);
       }
+    };
+  }
+
+  private TrashBinEntryCollectionDto mapEntries(TrashBinQuery query, TrashBinPage page) {
+    String collectionLink = collectionLink();
+    boolean mayRestore = RepositoryPermissions.create().isPermitted();
+    List<TrashBinEntryDto> mappedEntries = page.getEntries().stream()
+      .map(e -> mapEntry(collectionLink, e, mayRestore))
+      .collect(Collectors.toList());
+
+    Links.Builder linksBuilder = Links.linkingTo()
+      .self(pageLink(collectionLink, query, page.getPage()))
+      .single(Link.link("first", pageLink(collectionLink, query, 0)))
+      .single(Link.link("last", pageLink(collectionLink, query, page.getPageTotal() - 1)))
+      .single(Link.link("deleteAll", collectionLink))
+      .single(Link.link("stream", collectionLink + "/stream"));
+    if (page.getPage() > 0) {
+      linksBuilder.single(Link.link("prev", pageLink(collectionLink, query, page.getPage() - 1)));
+    }
+    if (page.getPage() < page.getPageTotal() - 1) {
+      linksBuilder.single(Link.link("next", pageLink(collectionLink, query, page.getPage() + 1)));
+    }
 
-      return TrashBinEntryDto.from(e, linksBuilder.build());
-    }).collect(Collectors.toList());
-    String deleteAllLink = linkBuilder.method("deleteAll").parameters().href();
+    return new TrashBinEntryCollectionDto(
+      linksBuilder.build(),
+      Embedded.embeddedBuilder().with("entries", mappedEntries).build(),
+      page.getPage(),
+      page.getPageTotal(),
+      binManager.getUsedBytes()
+    );
+  }
+
+  /**
+   * Maps the entry with links derived from the collection link, so that no link builder is needed per entry.
+   */
+  private TrashBinEntryDto mapEntry(String collectionLink, TrashBinEntry entry, boolean mayRestore) {
+    String deleteLink = collectionLink + "/" + entry.getRepositoryId();
+    Links.Builder linksBuilder = Links.linkingTo()
+      .single(Link.link("delete", deleteLink));
+    // only finished snapshots can be restored or downloaded, the snapshot of a failed entry may be missing
+    if (entry.getStatus() == SnapshotStatus.READY && mayRestore) {
+      linksBuilder.single(Link.link("restore", deleteLink + "/restore"));
+    }
+    if (entry.getStatus() == SnapshotStatus.READY && entry.getFormat() != SnapshotFormat.DIRECTORY) {
+      linksBuilder.single(Link.link("snapshot", deleteLink + "/snapshot"));
+    }
+    return TrashBinEntryDto.from(entry, linksBuilder.build());
+  }
+
+  private String collectionLink() {
+    return new LinkBuilder(scmPathInfoStoreProvider.get().get(), RepositoryTrashBinResource.class)
+      .method("getAll")
+      .parameters()
+      .href();
+  }
+
+  private String restoreTaskLink(RestoreTask task) {
+    return new LinkBuilder(scmPathInfoStoreProvider.get().get(), RepositoryTrashBinResource.class)
+      .method("getRestoreTask")
+      .parameters(task.getId())
+      .href();
+  }
+
+  private String pageLink(String collectionLink, TrashBinQuery query, int page) {
+    StringBuilder link = new StringBuilder(collectionLink)
+      .append("?page=").append(page)
+      .append("&pageSize=").append(query.getPageSize())
+      .append("&sortBy=").append(query.getSortBy().getParameter())
+      .append("&desc=").append(query.isDescending());
+    appendQueryParameter(link, "q", query.getFilter());
+    appendQueryParameter(link, "namespace", query.getNamespace());
+    appendQueryParameter(link, "deletedBy", query.getDeletedBy());
+    return link.toString();
+  }
 
-    return new HalRepresentation(Links.linkingTo().single(Link.link("deleteAll", deleteAllLink)).build(), Embedded.embeddedBuilder().with("entries", mappedEntries).build());
+  private void appendQueryParameter(StringBuilder link, String name, String value) {
+    if (value != null) {
+      link.append('&').append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
   }
 }
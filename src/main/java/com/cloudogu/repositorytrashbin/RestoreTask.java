@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restore of a trash bin entry, which runs in the background.
+ */
+@Getter
+public class RestoreTask {
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  private final String id;
+  private final String repositoryId;
+  private final String namespace;
+  private final String name;
+  private final long totalBytes;
+  private final Instant createdAt = Instant.now();
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong bytesProcessed = new AtomicLong();
+  private volatile State state = State.QUEUED;
+  private volatile String error;
+  private volatile Instant finishedAt;
+
+  RestoreTask(String id, TrashBinEntry entry) {
+    this.id = id;
+    this.repositoryId = entry.getRepositoryId();
+    this.namespace = entry.getNamespace();
+    this.name = entry.getName();
+    this.totalBytes = entry.getSize();
+  }
+
+  public long getBytesProcessed() {
+    return bytesProcessed.get();
+  }
+
+  public boolean isFinished() {
+    return state == State.DONE || state == State.FAILED;
+  }
+
+  void addBytesProcessed(long bytes) {
+    bytesProcessed.addAndGet(bytes);
+  }
+
+  void start() {
+    state = State.RUNNING;
+  }
+
+  void finish() {
+    finishedAt = Instant.now();
+    state = State.DONE;
+  }
+
+  void fail(String message) {
+    error = message;
+    finishedAt = Instant.now();
+    state = State.FAILED;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import de.otto.edison.hal.HalRepresentation;
+import de.otto.edison.hal.Links;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class RestoreTaskDto extends HalRepresentation {
+  private String id;
+  private String repositoryId;
+  private String namespace;
+  private String name;
+  private RestoreTask.State state;
+  private long bytesProcessed;
+  private long totalBytes;
+  private String error;
+  private Instant createdAt;
+  private Instant finishedAt;
+
+  private RestoreTaskDto(Links links) {
+    super(links);
+  }
+
+  public static RestoreTaskDto from(RestoreTask task, Links links) {
+    RestoreTaskDto dto = new RestoreTaskDto(links);
+    dto.id = task.getId();
+    dto.repositoryId = task.getRepositoryId();
+    dto.namespace = task.getNamespace();
+    dto.name = task.getName();
+    dto.state = task.getState();
+    dto.bytesProcessed = task.getBytesProcessed();
+    dto.totalBytes = task.getTotalBytes();
+    dto.error = task.getError();
+    dto.createdAt = task.getCreatedAt();
+    dto.finishedAt = task.getFinishedAt();
+    return dto;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.security.KeyGenerator;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+
+/**
+ * Runs restores of trash bin entries on a bounded executor and keeps their state, so that clients can poll it. Finished
+ * tasks are kept for an hour.
+ */
+@Singleton
+public class RestoreTasks {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RestoreTasks.class);
+
+  private static final int THREADS = 2;
+  private static final int QUEUE_CAPACITY = 20;
+  private static final Duration RETENTION = Duration.ofHours(1);
+
+  private final Executor executor;
+  private final KeyGenerator keyGenerator;
+  private final Map<String, RestoreTask> tasks = new ConcurrentHashMap<>();
+
+  @Inject
+  public RestoreTasks(KeyGenerator keyGenerator) {
+    this(
+      new ThreadPoolExecutor(
+        THREADS,
+        THREADS,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+        new ThreadFactoryBuilder().setNameFormat("TrashBinRestore-%d").setDaemon(true).build()
+      ),
+      keyGenerator
+    );
+  }
+
+  RestoreTasks(Executor executor, KeyGenerator keyGenerator) {
+    this.executor = executor;
+    this.keyGenerator = keyGenerator;
+  }
+
+  public synchronized RestoreTask submit(TrashBinEntry entry, Consumer<RestoreTask> restore) {
+    removeExpiredTasks();
+    Optional<RestoreTask> running = tasks.values().stream()
+      .filter(task -> task.getRepositoryId().equals(entry.getRepositoryId()) && !task.isFinished())
+      .findFirst();
+    if (running.isPresent()) {
+      return running.get();
+    }
+
+    RestoreTask task = new RestoreTask(keyGenerator.createKey(), entry);
+    tasks.put(task.getId(), task);
+    try {
+      executor.execute(SecurityUtils.getSubject().associateWith(() -> run(task, restore)));
+    } catch (RejectedExecutionException e) {
+      tasks.remove(task.getId());
+      throw new RepositoryTrashBinException(
+        entity(Repository.class, entry.getRepositoryId()).build(),
+        "Too many restores in progress",
+        e
+      );
+    }
+    return task;
+  }
+
+  public Optional<RestoreTask> get(String taskId) {
+    return Optional.ofNullable(tasks.get(taskId));
+  }
+
+  private void run(RestoreTask task, Consumer<RestoreTask> restore) {
+    task.start();
+    try {
+      restore.accept(task);
+      task.finish();
+    } catch (Exception e) {
+      LOG.warn("failed to restore repository {} from trash bin", task.getRepositoryId(), e);
+      task.fail(e.getMessage());
+    }
+  }
+
+  private void removeExpiredTasks() {
+    Instant threshold = Instant.now().minus(RETENTION);
+    tasks.values().removeIf(task -> task.isFinished() && task.getFinishedAt().isBefore(threshold));
+  }
+}
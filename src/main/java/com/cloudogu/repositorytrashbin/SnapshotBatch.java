@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Detects bursts of deletions, like the deletion of all repositories of a namespace, and collects the repositories
+ * deleted during a burst. The collected repositories are passed to the consumer together, when no further repository
+ * has been deleted for {@link #QUIET_PERIOD} or when {@link #MAX_BATCH_SIZE} repositories have been collected.
+ */
+class SnapshotBatch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SnapshotBatch.class);
+
+  static final Duration BURST_WINDOW = Duration.ofSeconds(10);
+  static final Duration QUIET_PERIOD = Duration.ofSeconds(2);
+  static final int MAX_BATCH_SIZE = 100;
+
+  private final Consumer<List<String>> consumer;
+  private final ScheduledExecutorService executor;
+  private final Clock clock;
+
+  private final Deque<Instant> recentDeletions = new ArrayDeque<>();
+  private final List<String> collected = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  SnapshotBatch(Consumer<List<String>> consumer) {
+    this(
+      consumer,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TrashBinBatch-%d").setDaemon(true).build()),
+      Clock.systemUTC()
+    );
+  }
+
+  SnapshotBatch(Consumer<List<String>> consumer, ScheduledExecutorService executor, Clock clock) {
+    this.consumer = consumer;
+    this.executor = executor;
+    this.clock = clock;
+  }
+
+  /**
+   * Records a deletion and returns {@code true}, if at least {@code threshold} deletions, including this one, happened
+   * within the {@link #BURST_WINDOW}. A threshold of zero or less disables the detection.
+   */
+  synchronized boolean isBurst(int threshold) {
+    if (threshold <= 0) {
+      return false;
+    }
+    Instant now = clock.instant();
+    Instant windowStart = now.minus(BURST_WINDOW);
+    recentDeletions.addLast(now);
+    while (recentDeletions.size() > threshold || recentDeletions.getFirst().isBefore(windowStart)) {
+      recentDeletions.removeFirst();
+    }
+    return recentDeletions.size() >= threshold;
+  }
+
+  synchronized void add(String repositoryId) {
+    collected.add(repositoryId);
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+    }
+    if (collected.size() >= MAX_BATCH_SIZE) {
+      scheduledFlush = executor.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+    } else {
+      scheduledFlush = executor.schedule(this::flush, QUIET_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Passes the collected repositories to the consumer, if there are any.
+   */
+  void flush() {
+    List<String> batch;
+    synchronized (this) {
+      batch = new ArrayList<>(collected);
+      collected.clear();
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      consumer.accept(batch);
+    } catch (Exception e) {
+      LOG.error("failed to write snapshots of {} repositories deleted in a burst", batch.size(), e);
+    }
+  }
+
+  /**
+   * Stops the executor. Collected repositories are not passed to the consumer anymore.
+   */
+  void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.store.Blob;
+import sonia.scm.store.BlobStore;
+import sonia.scm.store.BlobStoreFactory;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes the snapshots of trash bin entries. Depending on the {@link StorageMode} of the entry, the
+ * snapshot is stored as a single blob or as a manifest blob listing the chunks of the {@link ChunkStore}.
+ */
+class SnapshotBlobs {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SnapshotBlobs.class);
+
+  private final BlobStoreFactory blobStoreFactory;
+  private final ChunkStore chunkStore;
+
+  SnapshotBlobs(BlobStoreFactory blobStoreFactory, ChunkStore chunkStore) {
+    this.blobStoreFactory = blobStoreFactory;
+    this.chunkStore = chunkStore;
+  }
+
+  /**
+   * Writes the snapshot. The checksum and the size of the uncompressed snapshot are computed while it is written.
+   */
+  WrittenSnapshot write(String repositoryId, TrashBinEntry entry, int compressionLevel, SnapshotWriter writer) throws IOException {
+    Blob blob = createBlobStore().create(repositoryId);
+    ChecksumWriter checksumWriter = new ChecksumWriter(writer);
+    if (entry.getStorage() == StorageMode.CHUNKED) {
+      ChunkStore.ChunkedSnapshot snapshot = chunkStore.write(entry.getCodec(), compressionLevel, checksumWriter);
+      try (Writer manifest = new OutputStreamWriter(blob.getOutputStream(), StandardCharsets.UTF_8)) {
+        for (String chunk : snapshot.getChunks()) {
+          manifest.write(chunk);
+          manifest.write('\n');
+        }
+      } catch (IOException e) {
+        chunkStore.release(snapshot.getChunks());
+        throw e;
+      }
+      return new WrittenSnapshot(snapshot.getSize(), snapshot.getStoredBytes() + blob.getSize(), checksumWriter.getChecksum(), checksumWriter.getLength());
+    }
+    try (OutputStream output = entry.getCodec().compress(blob.getOutputStream(), compressionLevel)) {
+      checksumWriter.write(output);
+    }
+    return new WrittenSnapshot(blob.getSize(), blob.getSize(), checksumWriter.getChecksum(), checksumWriter.getLength());
+  }
+
+  /**
+   * Opens the uncompressed snapshot. The progress is called with the number of stored bytes read. If the entry has a
+   * checksum, it is verified when the snapshot has been read completely.
+   */
+  InputStream open(String repositoryId, TrashBinEntry entry, LongConsumer progress) throws IOException {
+    InputStream snapshot = openUnverified(repositoryId, entry, progress);
+    if (entry.getChecksum() != null) {
+      return new VerifyingInputStream(snapshot, entry.getChecksum());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Returns the size of the uncompressed snapshot, or -1 if it is unknown, because the snapshot is compressed and has
+   * been written before the size has been recorded.
+   */
+  long getLength(String repositoryId, TrashBinEntry entry) throws FileNotFoundException {
+    if (isPlainBlob(entry)) {
+      return getBlob(repositoryId).getSize();
+    }
+    return entry.getUncompressedSize() > 0 ? entry.getUncompressedSize() : -1;
+  }
+
+  /**
+   * Writes the given range of the uncompressed snapshot to the output, without verifying the checksum. A negative
+   * length writes the snapshot up to its end. Uncompressed
+   * single blobs are read from the offset directly and are transferred by their file channel, if the blob store is
+   * file based. Other snapshots have to be decompressed from the start.
+   */
+  void transfer(String repositoryId, TrashBinEntry entry, long offset, long length, OutputStream output) throws IOException {
+    if (isPlainBlob(entry)) {
+      try (InputStream input = getBlob(repositoryId).getInputStream()) {
+        if (input instanceof FileInputStream) {
+          transfer(((FileInputStream) input).getChannel(), offset, length, output);
+        } else {
+          copy(input, offset, length, output);
+        }
+      }
+    } else {
+      try (InputStream input = openUnverified(repositoryId, entry, bytes -> {})) {
+        copy(input, offset, length, output);
+      }
+    }
+  }
+
+  private static void transfer(FileChannel channel, long offset, long length, OutputStream output) throws IOException {
+    WritableByteChannel target = Channels.newChannel(output);
+    long position = offset;
+    long end = length < 0 ? channel.size() : offset + length;
+    while (position < end) {
+      long transferred = channel.transferTo(position, end - position, target);
+      if (transferred <= 0) {
+        throw new EOFException("snapshot ends before the requested range");
+      }
+      position += transferred;
+    }
+  }
+
+  private static void copy(InputStream input, long offset, long length, OutputStream output) throws IOException {
+    ByteStreams.skipFully(input, offset);
+    if (length < 0) {
+      ByteStreams.copy(input, output);
+    } else if (ByteStreams.copy(ByteStreams.limit(input, length), output) < length) {
+      throw new EOFException("snapshot ends before the requested range");
+    }
+  }
+
+  private boolean isPlainBlob(TrashBinEntry entry) {
+    return entry.getStorage() == StorageMode.BLOB && entry.getCodec() == SnapshotCodec.NONE;
+  }
+
+  private InputStream openUnverified(String repositoryId, TrashBinEntry entry, LongConsumer progress) throws IOException {
+    Blob blob = getBlob(repositoryId);
+    if (entry.getStorage() == StorageMode.CHUNKED) {
+      return chunkStore.open(readManifest(blob), progress);
+    }
+    return entry.getCodec().decompress(new ProgressInputStream(blob.getInputStream(), progress));
+  }
+
+  /**
+   * Removes the snapshot and returns the number of freed bytes. Without an entry the snapshot is treated as single blob.
+   */
+  synchronized long delete(String repositoryId, TrashBinEntry entry) {
+    BlobStore blobStore = createBlobStore();
+    Optional<Blob> blob = blobStore.getOptional(repositoryId);
+    if (!blob.isPresent()) {
+      return 0;
+    }
+    long freed = blob.get().getSize();
+    if (entry != null && entry.getStorage() == StorageMode.CHUNKED) {
+      try {
+        freed += chunkStore.release(readManifest(blob.get()));
+      } catch (IOException e) {
+        LOG.warn("failed to read manifest of snapshot for repository {}, chunks could not be released", repositoryId, e);
+      }
+    }
+    blobStore.remove(repositoryId);
+    return freed;
+  }
+
+  long getStoredBytes() {
+    return createBlobStore().getAll().stream().mapToLong(Blob::getSize).sum() + chunkStore.getStoredBytes();
+  }
+
+  private Blob getBlob(String repositoryId) throws FileNotFoundException {
+    return createBlobStore().getOptional(repositoryId)
+      .orElseThrow(() -> new FileNotFoundException("snapshot of repository " + repositoryId + " is missing"));
+  }
+
+  private List<String> readManifest(Blob blob) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(blob.getInputStream(), StandardCharsets.UTF_8))) {
+      return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+    }
+  }
+
+  private BlobStore createBlobStore() {
+    return blobStoreFactory.withName(RepositoryBinManager.STORE_NAME).build();
+  }
+
+  @FunctionalInterface
+  interface SnapshotWriter {
+    void write(OutputStream output) throws IOException;
+  }
+
+  /**
+   * Computes the checksum and counts the data written by the wrapped writer.
+   */
+  private static class ChecksumWriter implements SnapshotWriter {
+
+    private final SnapshotWriter writer;
+    private HashingOutputStream output;
+    private CountingOutputStream counter;
+
+    ChecksumWriter(SnapshotWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+      this.counter = new CountingOutputStream(output);
+      this.output = new HashingOutputStream(Hashing.sha256(), counter);
+      writer.write(this.output);
+    }
+
+    String getChecksum() {
+      return output.hash().toString();
+    }
+
+    long getLength() {
+      return counter.getCount();
+    }
+  }
+
+  /**
+   * Size of a written snapshot, the number of bytes, which have been added to the storage by it, and the SHA-256
+   * checksum and the size of the uncompressed snapshot.
+   */
+  @Getter
+  @AllArgsConstructor
+  static class WrittenSnapshot {
+    private final long size;
+    private final long storedBytes;
+    private final String checksum;
+    private final long uncompressedSize;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to the snapshot blobs. Entries without a codec have been written before compression was
+ * introduced and are read as {@link #NONE}.
+ */
+public enum SnapshotCodec {
+  NONE {
+    @Override
+    public OutputStream compress(OutputStream output, int level) {
+      return output;
+    }
+
+    @Override
+    public InputStream decompress(InputStream input) {
+      return input;
+    }
+  },
+  GZIP {
+    @Override
+    public OutputStream compress(OutputStream output, int level) throws IOException {
+      return new LeveledGzipOutputStream(output, level);
+    }
+
+    @Override
+    public InputStream decompress(InputStream input) throws IOException {
+      return new GZIPInputStream(input, BUFFER_SIZE);
+    }
+  };
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public abstract OutputStream compress(OutputStream output, int level) throws IOException;
+
+  public abstract InputStream decompress(InputStream input) throws IOException;
+
+  private static class LeveledGzipOutputStream extends GZIPOutputStream {
+    LeveledGzipOutputStream(OutputStream output, int level) throws IOException {
+      super(output, BUFFER_SIZE);
+      def.setLevel(level);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Uncompressed snapshot of a trash bin entry for the download. The snapshot is read, when a range of it is written.
+ */
+@Getter
+public class SnapshotDownload {
+
+  private final String repositoryId;
+  private final String namespace;
+  private final String name;
+  private final SnapshotFormat format;
+  private final String checksum;
+  /**
+   * Size of the uncompressed snapshot, or -1 if it is unknown.
+   */
+  private final long length;
+  @Getter(AccessLevel.NONE)
+  private final RangeWriter writer;
+
+  SnapshotDownload(TrashBinEntry entry, long length, RangeWriter writer) {
+    this.repositoryId = entry.getRepositoryId();
+    this.namespace = entry.getNamespace();
+    this.name = entry.getName();
+    this.format = entry.getFormat();
+    this.checksum = entry.getChecksum();
+    this.length = length;
+    this.writer = writer;
+  }
+
+  public boolean isLengthKnown() {
+    return length >= 0;
+  }
+
+  /**
+   * Writes the given range of the snapshot. The checksum is not verified, because only a part of the snapshot may be
+   * written; clients can compare the downloaded snapshot with the checksum.
+   */
+  public void write(long offset, long rangeLength, OutputStream output) throws IOException {
+    writer.write(offset, rangeLength, output);
+  }
+
+  public void writeAll(OutputStream output) throws IOException {
+    writer.write(0, length, output);
+  }
+
+  @FunctionalInterface
+  interface RangeWriter {
+    void write(long offset, long length, OutputStream output) throws IOException;
+  }
+}
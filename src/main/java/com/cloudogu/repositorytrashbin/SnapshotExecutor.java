@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+
+import jakarta.inject.Singleton;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executor for the expensive part of staged snapshots. If the queue is full, the work is done by the calling
+ * thread, which slows down further deletions instead of piling up staging directories. The work is always done without
+ * a subject, because it has not been requested by the user who happened to delete the repository.
+ */
+@Singleton
+public class SnapshotExecutor implements Executor {
+
+  private static final int THREADS = 2;
+  private static final int QUEUE_CAPACITY = 100;
+
+  private final ExecutorService executor = new ThreadPoolExecutor(
+    THREADS,
+    THREADS,
+    0L,
+    TimeUnit.MILLISECONDS,
+    new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+    new ThreadFactoryBuilder().setNameFormat("TrashBinSnapshot-%d").setDaemon(true).build(),
+    new ThreadPoolExecutor.CallerRunsPolicy()
+  );
+
+  @Override
+  public void execute(Runnable command) {
+    executor.execute(withoutSubject(command));
+  }
+
+  /**
+   * Unbinds the subject while the command runs. Pool threads inherit the subject of the thread creating them and the
+   * command may run on the calling thread, so the subject bound before is restored afterwards.
+   */
+  static Runnable withoutSubject(Runnable command) {
+    return () -> {
+      Subject subject = ThreadContext.unbindSubject();
+      try {
+        command.run();
+      } finally {
+        if (subject != null) {
+          ThreadContext.bind(subject);
+        }
+      }
+    };
+  }
+}
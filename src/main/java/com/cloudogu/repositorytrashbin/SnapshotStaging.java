@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryLocationResolver;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Handles the on-disk copies of repository directories, which are used for staged snapshots. Files are hard linked
+ * into the staging area whenever the file system allows it, so staging does not depend on the repository size.
+ * The metadata file of the repository is left out, because it is rewritten by the core when the repository is restored.
+ */
+@Singleton
+public class SnapshotStaging {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SnapshotStaging.class);
+
+  static final String METADATA_FILE = "metadata.xml";
+
+  private final Path stagingDirectory;
+  private final RepositoryLocationResolver locationResolver;
+
+  @Inject
+  public SnapshotStaging(SCMContextProvider contextProvider, RepositoryLocationResolver locationResolver) {
+    this(contextProvider.getBaseDirectory().toPath().resolve("trash-bin").resolve("staging"), locationResolver);
+  }
+
+  SnapshotStaging(Path stagingDirectory, RepositoryLocationResolver locationResolver) {
+    this.stagingDirectory = stagingDirectory;
+    this.locationResolver = locationResolver;
+  }
+
+  public Path stage(Repository repository) throws IOException {
+    Path source = getLocation(repository.getId());
+    Path target = resolve(repository.getId());
+    deleteRecursively(target);
+    Files.createDirectories(target.getParent());
+    linkTree(source, target);
+    return target;
+  }
+
+  public Optional<Path> find(String repositoryId) {
+    Path directory = resolve(repositoryId);
+    if (Files.isDirectory(directory)) {
+      return Optional.of(directory);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the total size of the files in the staging directory of the repository.
+   */
+  public long size(String repositoryId) throws IOException {
+    Path directory = resolve(repositoryId);
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator();
+      long size = 0;
+      while (iterator.hasNext()) {
+        size += Files.size(iterator.next());
+      }
+      return size;
+    }
+  }
+
+  public void remove(String repositoryId) {
+    try {
+      deleteRecursively(resolve(repositoryId));
+    } catch (IOException e) {
+      LOG.warn("could not remove staging directory of repository {}", repositoryId, e);
+    }
+  }
+
+  public void restore(Repository repository, Path snapshot) throws IOException {
+    Path location = clearLocation(repository);
+    try (Stream<Path> children = Files.list(snapshot)) {
+      Iterator<Path> iterator = children.iterator();
+      while (iterator.hasNext()) {
+        Path child = iterator.next();
+        move(child, location.resolve(child.getFileName().toString()));
+      }
+    }
+  }
+
+  public void restore(Repository repository, InputStream archive) throws IOException {
+    DirectoryArchive.extract(archive, clearLocation(repository));
+  }
+
+  private Path clearLocation(Repository repository) throws IOException {
+    Path location = getLocation(repository.getId());
+    try (Stream<Path> children = Files.list(location)) {
+      Iterator<Path> iterator = children.iterator();
+      while (iterator.hasNext()) {
+        Path child = iterator.next();
+        if (!METADATA_FILE.equals(child.getFileName().toString())) {
+          deleteRecursively(child);
+        }
+      }
+    }
+    return location;
+  }
+
+  private Path getLocation(String repositoryId) {
+    return locationResolver.forClass(Path.class).getLocation(repositoryId);
+  }
+
+  private Path resolve(String repositoryId) {
+    return stagingDirectory.resolve(repositoryId);
+  }
+
+  private void linkTree(Path source, Path target) throws IOException {
+    Files.walkFileTree(source, new SimpleFileVisitor<>() {
+      private boolean linksSupported = true;
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (file.getParent().equals(source) && METADATA_FILE.equals(file.getFileName().toString())) {
+          return FileVisitResult.CONTINUE;
+        }
+        Path link = target.resolve(source.relativize(file).toString());
+        if (linksSupported) {
+          try {
+            Files.createLink(link, file);
+            return FileVisitResult.CONTINUE;
+          } catch (UnsupportedOperationException | FileSystemException e) {
+            LOG.debug("could not create hard link for {}, falling back to copy", file, e);
+            linksSupported = false;
+          }
+        }
+        Files.copy(file, link, StandardCopyOption.COPY_ATTRIBUTES);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.debug("could not move {} atomically, falling back to copy", source, e);
+      copyTree(source, target);
+      deleteRecursively(source);
+    }
+  }
+
+  private void copyTree(Path source, Path target) throws IOException {
+    try (Stream<Path> paths = Files.walk(source)) {
+      Iterator<Path> iterator = paths.iterator();
+      while (iterator.hasNext()) {
+        Path path = iterator.next();
+        Path copy = target.resolve(source.relativize(path).toString());
+        if (Files.isDirectory(path)) {
+          Files.createDirectories(copy);
+        } else {
+          Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+      }
+    }
+  }
+
+  static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      Iterator<Path> iterator = paths.sorted(Comparator.reverseOrder()).iterator();
+      while (iterator.hasNext()) {
+        Files.delete(iterator.next());
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs an operation for many trash bin entries with a bounded number of threads, either in the name of the current
+ * subject or, for background work, without any subject. The result of every entry is passed to the result consumer as
+ * soon as it is available; the consumer is never called concurrently.
+ */
+class TrashBinBulkRunner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TrashBinBulkRunner.class);
+
+  static final int MAX_THREADS = 4;
+
+  void run(Collection<String> repositoryIds, Consumer<String> operation, Consumer<BulkResult> results) {
+    Subject subject = SecurityUtils.getSubject();
+    run(repositoryIds, operation, results, subject::associateWith);
+  }
+
+  /**
+   * Runs the operation without any subject, because background work has not been requested by the subject, which may
+   * be bound to the calling thread. New threads inherit the subject of the thread creating them, so it is unbound
+   * explicitly. Failures are logged only.
+   */
+  void runInBackground(Collection<String> repositoryIds, Consumer<String> operation) {
+    run(repositoryIds, operation, result -> {}, task -> () -> {
+      ThreadContext.unbindSubject();
+      task.run();
+    });
+  }
+
+  private void run(Collection<String> repositoryIds, Consumer<String> operation, Consumer<BulkResult> results, UnaryOperator<Runnable> context) {
+    if (repositoryIds.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(MAX_THREADS, repositoryIds.size()),
+      new ThreadFactoryBuilder().setNameFormat("TrashBinBulk-%d").setDaemon(true).build()
+    );
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (String repositoryId : repositoryIds) {
+        futures.add(executor.submit(context.apply(() -> {
+          BulkResult result = execute(repositoryId, operation);
+          synchronized (results) {
+            results.accept(result);
+          }
+        })));
+      }
+      awaitAll(futures);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private BulkResult execute(String repositoryId, Consumer<String> operation) {
+    try {
+      operation.accept(repositoryId);
+      return BulkResult.success(repositoryId);
+    } catch (Exception e) {
+      LOG.warn("bulk operation failed for trash bin entry of repository {}", repositoryId, e);
+      return BulkResult.failure(repositoryId, e.getMessage());
+    }
+  }
+
+  private void awaitAll(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("bulk operation on trash bin was interrupted");
+        return;
+      } catch (ExecutionException e) {
+        LOG.warn("unexpected error during bulk operation on trash bin", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Purges trash bin entries with the configured number of threads. The purge can be throttled by deletions and by
+ * freed megabytes per second, so that a large cleanup does not saturate the storage of the server. While the system
+ * load is above the configured maximum, the purge pauses for a while before each entry. The statistics of the last
+ * {@link #MAX_STORED_RUNS} runs are stored, one for every run, so that an eviction does not hide the last scheduled
+ * purge.
+ */
+@Singleton
+public class TrashBinCleanupEngine {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TrashBinCleanupEngine.class);
+
+  static final String STATISTICS_STORE_NAME = "trash-bin-cleanup-runs";
+  static final int MAX_STORED_RUNS = 50;
+
+  private static final int KILOBYTE = 1024;
+  private static final int MAX_PAUSES_PER_ENTRY = 60;
+
+  private final DataStoreFactory storeFactory;
+  private final DoubleSupplier loadPerProcessor;
+  private final Duration pause;
+  private final AtomicLong runs = new AtomicLong();
+
+  @Inject
+  public TrashBinCleanupEngine(DataStoreFactory storeFactory) {
+    this(
+      storeFactory,
+      () -> ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage() / Runtime.getRuntime().availableProcessors(),
+      Duration.ofSeconds(1)
+    );
+  }
+
+  TrashBinCleanupEngine(DataStoreFactory storeFactory, DoubleSupplier loadPerProcessor, Duration pause) {
+    this.storeFactory = storeFactory;
+    this.loadPerProcessor = loadPerProcessor;
+    this.pause = pause;
+  }
+
+  public CleanupStatistics purge(String reason, Collection<String> repositoryIds, TrashBinConfig config, Purger purger) {
+    Instant startedAt = Instant.now();
+    AtomicInteger purged = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+    AtomicLong bytesFreed = new AtomicLong();
+
+    if (!repositoryIds.isEmpty()) {
+      RateLimiter deletionLimiter = createRateLimiter(config.getCleanupDeletionsPerSecond());
+      RateLimiter bandwidthLimiter = createRateLimiter(config.getCleanupMegabytesPerSecond() * KILOBYTE);
+      ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, config.getCleanupThreads()),
+        new ThreadFactoryBuilder().setNameFormat("TrashBinCleanup-%d").setDaemon(true).build()
+      );
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (String repositoryId : repositoryIds) {
+          futures.add(executor.submit(() -> {
+            pauseUnderLoad(config);
+            if (deletionLimiter != null) {
+              deletionLimiter.acquire();
+            }
+            try {
+              long size = purger.purge(repositoryId);
+              purged.incrementAndGet();
+              bytesFreed.addAndGet(size);
+              if (bandwidthLimiter != null && size > 0) {
+                bandwidthLimiter.acquire((int) Math.min(Integer.MAX_VALUE, Math.max(1, size / KILOBYTE)));
+              }
+            } catch (Exception e) {
+              LOG.warn("failed to purge trash bin entry of repository {}", repositoryId, e);
+              failures.incrementAndGet();
+            }
+          }));
+        }
+        awaitAll(futures);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    CleanupStatistics statistics = new CleanupStatistics(
+      reason,
+      startedAt,
+      Duration.between(startedAt, Instant.now()).toMillis(),
+      purged.get(),
+      failures.get(),
+      bytesFreed.get()
+    );
+    store(statistics);
+    LOG.info(
+      "purged {} trash bin entries ({} failed) and freed {} bytes in {} ms ({})",
+      statistics.getEntriesPurged(), statistics.getFailures(), statistics.getBytesFreed(), statistics.getDurationMillis(), reason
+    );
+    return statistics;
+  }
+
+  /**
+   * Returns the statistics of the stored runs, the latest run first.
+   */
+  public synchronized List<CleanupStatistics> getHistory() {
+    List<CleanupStatistics> history = new ArrayList<>();
+    new TreeMap<>(createStore().getAll()).descendingMap().values().forEach(history::add);
+    return history;
+  }
+
+  /**
+   * Stores the statistics with a key ordered by the start of the run, so that runs starting in the same millisecond
+   * keep their order. The oldest runs are removed, if there are more than {@link #MAX_STORED_RUNS}.
+   */
+  private synchronized void store(CleanupStatistics statistics) {
+    DataStore<CleanupStatistics> store = createStore();
+    store.put(String.format("%019d-%010d", statistics.getStartedAt().toEpochMilli(), runs.incrementAndGet()), statistics);
+    NavigableMap<String, CleanupStatistics> storedRuns = new TreeMap<>(store.getAll());
+    while (storedRuns.size() > MAX_STORED_RUNS) {
+      store.remove(storedRuns.pollFirstEntry().getKey());
+    }
+  }
+
+  private DataStore<CleanupStatistics> createStore() {
+    return storeFactory.withType(CleanupStatistics.class).withName(STATISTICS_STORE_NAME).build();
+  }
+
+  /**
+   * Waits until the load drops below the maximum, but not longer than {@link #MAX_PAUSES_PER_ENTRY} pauses, so that
+   * the cleanup still makes progress on a permanently busy server. The load is negative, if it is not available.
+   */
+  private void pauseUnderLoad(TrashBinConfig config) {
+    if (config.getCleanupMaxLoad() <= 0) {
+      return;
+    }
+    double maxLoad = config.getCleanupMaxLoad() / 100.0;
+    for (int i = 0; i < MAX_PAUSES_PER_ENTRY && loadPerProcessor.getAsDouble() > maxLoad; i++) {
+      LOG.debug("pausing cleanup of trash bin because of high system load");
+      try {
+        Thread.sleep(pause.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private RateLimiter createRateLimiter(int permitsPerSecond) {
+    if (permitsPerSecond > 0) {
+      return RateLimiter.create(permitsPerSecond);
+    }
+    return null;
+  }
+
+  private void awaitAll(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("cleanup of trash bin was interrupted");
+        return;
+      } catch (ExecutionException e) {
+        LOG.warn("unexpected error during cleanup of trash bin", e);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  public interface Purger {
+    /**
+     * Removes the trash bin entry and returns the number of freed bytes.
+     */
+    long purge(String repositoryId) throws Exception;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryLocationResolver;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * Provides the free space of the volume holding the stores of the trash bin and estimates the size of the snapshot
+ * of a repository from its directory.
+ */
+@Singleton
+public class TrashBinDiskSpace {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TrashBinDiskSpace.class);
+
+  private final Path storeDirectory;
+  private final RepositoryLocationResolver locationResolver;
+
+  @Inject
+  public TrashBinDiskSpace(SCMContextProvider contextProvider, RepositoryLocationResolver locationResolver) {
+    this(contextProvider.getBaseDirectory().toPath(), locationResolver);
+  }
+
+  TrashBinDiskSpace(Path storeDirectory, RepositoryLocationResolver locationResolver) {
+    this.storeDirectory = storeDirectory;
+    this.locationResolver = locationResolver;
+  }
+
+  /**
+   * Returns the usable space of the volume of the stores in bytes, or an empty value if it cannot be determined.
+   */
+  public OptionalLong getUsableSpace() {
+    try {
+      return OptionalLong.of(Files.getFileStore(storeDirectory).getUsableSpace());
+    } catch (IOException e) {
+      LOG.warn("could not determine usable space of {}", storeDirectory, e);
+      return OptionalLong.empty();
+    }
+  }
+
+  /**
+   * Estimates the size of the snapshot of the repository as the size of the files in its directory. Compression is not
+   * taken into account, so this is an upper bound for most repositories. Returns 0 if the directory cannot be read.
+   */
+  public long estimateSize(Repository repository) {
+    try (Stream<Path> paths = Files.walk(locationResolver.forClass(Path.class).getLocation(repository.getId()))) {
+      Iterator<Path> iterator = paths.filter(Files::isRegularFile).iterator();
+      long size = 0;
+      while (iterator.hasNext()) {
+        size += Files.size(iterator.next());
+      }
+      return size;
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("could not estimate size of repository {}", repository, e);
+      return 0;
+    }
+  }
+}
@@ -16,7 +16,6 @@
 
 package com.cloudogu.repositorytrashbin;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -25,17 +24,85 @@ import sonia.scm.xml.XmlInstantAdapter;
 
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
 import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.time.Instant;
 
-@AllArgsConstructor
+/**
+ * Metadata of a repository in the trash bin. The complete repository is stored separately in the
+ * {@link RepositoryBinManager#REPOSITORY_STORE_NAME} store, because it is only needed to restore the repository.
+ */
 @NoArgsConstructor
 @Getter
 @Setter
+@XmlRootElement(name = "trash-bin-entry")
 @XmlAccessorType(XmlAccessType.FIELD)
 public class TrashBinEntry {
-  private Repository repository;
+  private String repositoryId;
+  private String namespace;
+  private String name;
+  private String type;
   private String deletedBy;
   @XmlJavaTypeAdapter(XmlInstantAdapter.class)
   private Instant deletedAt;
+  private SnapshotStatus status;
+  private SnapshotFormat format;
+  private SnapshotCodec codec;
+  private StorageMode storage;
+  private long size;
+  private long uncompressedSize;
+  private String checksum;
+  @XmlJavaTypeAdapter(XmlInstantAdapter.class)
+  private Instant verifiedAt;
+
+  public TrashBinEntry(Repository repository, String deletedBy, Instant deletedAt) {
+    this(repository, deletedBy, deletedAt, SnapshotStatus.READY, SnapshotFormat.EXPORT);
+  }
+
+  public TrashBinEntry(Repository repository, String deletedBy, Instant deletedAt, SnapshotStatus status, SnapshotFormat format) {
+    this.repositoryId = repository.getId();
+    this.namespace = repository.getNamespace();
+    this.name = repository.getName();
+    this.type = repository.getType();
+    this.deletedBy = deletedBy;
+    this.deletedAt = deletedAt;
+    this.status = status;
+    this.format = format;
+  }
+
+  /**
+   * Creates a copy of the given entry, so that the copy can be changed without affecting the cached entries.
+   */
+  public TrashBinEntry(TrashBinEntry other) {
+    this.repositoryId = other.repositoryId;
+    this.namespace = other.namespace;
+    this.name = other.name;
+    this.type = other.type;
+    this.deletedBy = other.deletedBy;
+    this.deletedAt = other.deletedAt;
+    this.status = other.status;
+    this.format = other.format;
+    this.codec = other.codec;
+    this.storage = other.storage;
+    this.size = other.size;
+    this.uncompressedSize = other.uncompressedSize;
+    this.checksum = other.checksum;
+    this.verifiedAt = other.verifiedAt;
+  }
+
+  public SnapshotStatus getStatus() {
+    return status == null ? SnapshotStatus.READY : status;
+  }
+
+  public SnapshotFormat getFormat() {
+    return format == null ? SnapshotFormat.EXPORT : format;
+  }
+
+  public SnapshotCodec getCodec() {
+    return codec == null ? SnapshotCodec.NONE : codec;
+  }
+
+  public StorageMode getStorage() {
+    return storage == null ? StorageMode.BLOB : storage;
+  }
 }
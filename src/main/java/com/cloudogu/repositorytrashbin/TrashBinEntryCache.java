@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Write-through cache of the trash bin entries. The entries are read from the store once, when they are needed for the
+ * first time, and every change is written to the store and to the cache. The cache keeps its own copies of the
+ * entries and hands out copies only, so that an entry changed by a caller is not visible to others until it is put
+ * back.
+ * <p>
+ * The entries are kept in a data store, which writes a file for each entry, so that adding or removing an entry does
+ * not rewrite the other ones.
+ */
+class TrashBinEntryCache {
+
+  private final DataStoreFactory storeFactory;
+
+  private Map<String, TrashBinEntry> entries;
+
+  TrashBinEntryCache(DataStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  synchronized TrashBinEntry get(String repositoryId) {
+    return copy(load().get(repositoryId));
+  }
+
+  /**
+   * Returns a copy of all entries, which may be modified by the caller.
+   */
+  synchronized Map<String, TrashBinEntry> getAll() {
+    Map<String, TrashBinEntry> copies = new HashMap<>();
+    load().forEach((id, entry) -> copies.put(id, copy(entry)));
+    return copies;
+  }
+
+  synchronized void put(String repositoryId, TrashBinEntry entry) {
+    createStore().put(repositoryId, entry);
+    if (entries != null) {
+      entries.put(repositoryId, copy(entry));
+    }
+  }
+
+  synchronized void remove(String repositoryId) {
+    createStore().remove(repositoryId);
+    if (entries != null) {
+      entries.remove(repositoryId);
+    }
+  }
+
+  /**
+   * Drops the cached entries, so that they are read from the store again when they are needed the next time.
+   */
+  synchronized void invalidate() {
+    entries = null;
+  }
+
+  synchronized boolean isLoaded() {
+    return entries != null;
+  }
+
+  private Map<String, TrashBinEntry> load() {
+    if (entries == null) {
+      entries = new HashMap<>();
+      createStore().getAll().forEach((id, entry) -> entries.put(id, copy(entry)));
+    }
+    return entries;
+  }
+
+  private static TrashBinEntry copy(TrashBinEntry entry) {
+    return entry == null ? null : new TrashBinEntry(entry);
+  }
+
+  private DataStore<TrashBinEntry> createStore() {
+    return storeFactory.withType(TrashBinEntry.class).withName(RepositoryBinManager.ENTRY_STORE_NAME).build();
+  }
+}
@@ -32,6 +32,8 @@ public class TrashBinEntryDto extends HalRepresentation {
   private String name;
   private String deletedBy;
   private Instant deletedAt;
+  private SnapshotStatus status;
+  private long size;
 
   private TrashBinEntryDto(@Nullable Links links, @Nullable Embedded embedded) {
     super(links, embedded);
@@ -50,8 +52,10 @@ public class TrashBinEntryDto extends HalRepresentation {
     TrashBinEntryDto dto = new TrashBinEntryDto(links, embedded);
     dto.deletedBy = entity.getDeletedBy();
     dto.deletedAt = entity.getDeletedAt();
-    dto.namespace = entity.getRepository().getNamespace();
-    dto.name = entity.getRepository().getName();
+    dto.status = entity.getStatus();
+    dto.size = entity.getSize();
+    dto.namespace = entity.getNamespace();
+    dto.name = entity.getName();
     return dto;
   }
 }
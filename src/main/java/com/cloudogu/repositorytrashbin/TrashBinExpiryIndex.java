@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+import sonia.scm.xml.XmlInstantAdapter;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Persistent index of all trash bin entries ordered by their time of deletion. Because the retention time is the same
+ * for all entries, this is also the order of expiration, so expired entries can be found without reading the whole
+ * trash bin. Every entry of the index is stored separately, so that adding and removing an entry does not rewrite the
+ * whole index.
+ */
+@Singleton
+public class TrashBinExpiryIndex {
+
+  static final String STORE_NAME = "trash-bin-expiry-entries";
+
+  private final DataStoreFactory storeFactory;
+
+  private final Map<String, ExpiryEntry> entries = new HashMap<>();
+  private final NavigableSet<ExpiryEntry> orderedEntries = new TreeSet<>(
+    Comparator.comparing(ExpiryEntry::getDeletedAt).thenComparing(ExpiryEntry::getRepositoryId)
+  );
+  private boolean loaded = false;
+  private boolean rebuilt = false;
+
+  @Inject
+  public TrashBinExpiryIndex(DataStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  /**
+   * Returns {@code true}, if the index has been rebuilt or contains stored entries. An empty index is rebuilt once
+   * after every start, which is cheap for an empty trash bin.
+   */
+  public synchronized boolean isInitialized() {
+    load();
+    return rebuilt || !entries.isEmpty();
+  }
+
+  public synchronized void rebuild(Map<String, TrashBinEntry> trashBinEntries) {
+    DataStore<ExpiryEntry> store = createStore();
+    store.clear();
+    entries.clear();
+    orderedEntries.clear();
+    trashBinEntries.forEach((id, entry) -> {
+      ExpiryEntry expiryEntry = new ExpiryEntry(id, entry.getDeletedAt());
+      if (index(expiryEntry)) {
+        store.put(id, expiryEntry);
+      }
+    });
+    loaded = true;
+    rebuilt = true;
+  }
+
+  public synchronized void add(String repositoryId, Instant deletedAt) {
+    load();
+    unindex(repositoryId);
+    ExpiryEntry entry = new ExpiryEntry(repositoryId, deletedAt);
+    if (index(entry)) {
+      createStore().put(repositoryId, entry);
+    }
+  }
+
+  public synchronized void remove(String repositoryId) {
+    load();
+    if (unindex(repositoryId)) {
+      createStore().remove(repositoryId);
+    }
+  }
+
+  public synchronized List<String> getDeletedBefore(Instant threshold) {
+    load();
+    List<String> result = new ArrayList<>();
+    for (ExpiryEntry entry : orderedEntries) {
+      if (!entry.getDeletedAt().isBefore(threshold)) {
+        break;
+      }
+      result.add(entry.getRepositoryId());
+    }
+    return result;
+  }
+
+  public synchronized List<String> getOldestFirst() {
+    load();
+    List<String> result = new ArrayList<>(orderedEntries.size());
+    orderedEntries.forEach(entry -> result.add(entry.getRepositoryId()));
+    return result;
+  }
+
+  public synchronized int size() {
+    load();
+    return entries.size();
+  }
+
+  public synchronized Optional<Instant> getOldestDeletion() {
+    load();
+    if (orderedEntries.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(orderedEntries.first().getDeletedAt());
+  }
+
+  private void load() {
+    if (!loaded) {
+      createStore().getAll().values().forEach(this::index);
+      loaded = true;
+    }
+  }
+
+  private boolean index(ExpiryEntry entry) {
+    if (entry.getDeletedAt() == null) {
+      return false;
+    }
+    entries.put(entry.getRepositoryId(), entry);
+    orderedEntries.add(entry);
+    return true;
+  }
+
+  private boolean unindex(String repositoryId) {
+    ExpiryEntry entry = entries.remove(repositoryId);
+    if (entry != null) {
+      orderedEntries.remove(entry);
+      return true;
+    }
+    return false;
+  }
+
+  private DataStore<ExpiryEntry> createStore() {
+    return storeFactory.withType(ExpiryEntry.class).withName(STORE_NAME).build();
+  }
+
+  @Getter
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @XmlRootElement(name = "expiry-entry")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class ExpiryEntry {
+    private String repositoryId;
+    @XmlJavaTypeAdapter(XmlInstantAdapter.class)
+    private Instant deletedAt;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the trash bin entries with one ordered view per sort field, so a page of the listing can be
+ * served without sorting all entries for every request. The index keeps its own copies of the entries and returns
+ * copies only, because changing an indexed entry in place would break the order of the views.
+ */
+class TrashBinIndex {
+
+  static final int BATCH_SIZE = 500;
+
+  private final Map<String, IndexedEntry> entries = new HashMap<>();
+  private final Map<TrashBinSortField, NavigableSet<IndexedEntry>> orderedEntries = new EnumMap<>(TrashBinSortField.class);
+  private boolean loaded = false;
+
+  TrashBinIndex() {
+    for (TrashBinSortField field : TrashBinSortField.values()) {
+      Comparator<IndexedEntry> comparator = Comparator.comparing(IndexedEntry::getEntry, field.getComparator());
+      orderedEntries.put(field, new TreeSet<>(comparator.thenComparing(IndexedEntry::getId)));
+    }
+  }
+
+  synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Loads the index, if it has not been loaded yet. The entries are read while the index is locked, so that an entry
+   * put by a concurrent change is either part of the read entries or is put after the index has been loaded.
+   */
+  synchronized void loadIfNecessary(Supplier<Map<String, TrashBinEntry>> storedEntries) {
+    if (!loaded) {
+      load(storedEntries.get());
+    }
+  }
+
+  synchronized void load(Map<String, TrashBinEntry> storedEntries) {
+    clear();
+    storedEntries.forEach(this::add);
+    loaded = true;
+  }
+
+  synchronized void put(String id, TrashBinEntry entry) {
+    if (!loaded) {
+      return;
+    }
+    remove(id);
+    add(id, entry);
+  }
+
+  synchronized void remove(String id) {
+    IndexedEntry indexedEntry = entries.remove(id);
+    if (indexedEntry != null) {
+      orderedEntries.values().forEach(set -> set.remove(indexedEntry));
+    }
+  }
+
+  synchronized void invalidate() {
+    clear();
+    loaded = false;
+  }
+
+  synchronized TrashBinPage query(TrashBinQuery query) {
+    NavigableSet<IndexedEntry> ordered = orderedEntries.get(query.getSortBy());
+    Iterable<IndexedEntry> iterable = query.isDescending() ? ordered.descendingSet() : ordered;
+    int offset = query.getPage() * query.getPageSize();
+    List<TrashBinEntry> page = new ArrayList<>(query.getPageSize());
+    int matches = 0;
+    for (IndexedEntry indexedEntry : iterable) {
+      if (query.matches(indexedEntry.getEntry())) {
+        if (matches >= offset && page.size() < query.getPageSize()) {
+          page.add(new TrashBinEntry(indexedEntry.getEntry()));
+        }
+        matches++;
+        if (!query.isFiltered() && page.size() == query.getPageSize()) {
+          matches = entries.size();
+          break;
+        }
+      }
+    }
+    return new TrashBinPage(page, query.getPage(), query.getPageSize(), matches);
+  }
+
+  /**
+   * Iterates over all entries matching the query in the order of the query. The entries are fetched in batches, so
+   * the index is not locked between two calls of the iterator. Changes between two batches may be missed.
+   */
+  Iterable<TrashBinEntry> iterate(TrashBinQuery query) {
+    return () -> new AbstractIterator<TrashBinEntry>() {
+      private Iterator<IndexedEntry> batch = Collections.emptyIterator();
+      private IndexedEntry last;
+      private boolean exhausted;
+
+      @Override
+      protected TrashBinEntry computeNext() {
+        if (!batch.hasNext() && !exhausted) {
+          List<IndexedEntry> nextBatch = nextBatch(query, last);
+          exhausted = nextBatch.size() < BATCH_SIZE;
+          batch = nextBatch.iterator();
+        }
+        if (!batch.hasNext()) {
+          return endOfData();
+        }
+        last = batch.next();
+        return new TrashBinEntry(last.getEntry());
+      }
+    };
+  }
+
+  private synchronized List<IndexedEntry> nextBatch(TrashBinQuery query, IndexedEntry last) {
+    NavigableSet<IndexedEntry> ordered = orderedEntries.get(query.getSortBy());
+    NavigableSet<IndexedEntry> remaining = query.isDescending() ? ordered.descendingSet() : ordered;
+    if (last != null) {
+      remaining = remaining.tailSet(last, false);
+    }
+    List<IndexedEntry> batch = new ArrayList<>(BATCH_SIZE);
+    for (IndexedEntry indexedEntry : remaining) {
+      if (query.matches(indexedEntry.getEntry())) {
+        batch.add(indexedEntry);
+        if (batch.size() == BATCH_SIZE) {
+          break;
+        }
+      }
+    }
+    return batch;
+  }
+
+  private void add(String id, TrashBinEntry entry) {
+    IndexedEntry indexedEntry = new IndexedEntry(id, new TrashBinEntry(entry));
+    entries.put(id, indexedEntry);
+    orderedEntries.values().forEach(set -> set.add(indexedEntry));
+  }
+
+  private void clear() {
+    entries.clear();
+    orderedEntries.values().forEach(NavigableSet::clear);
+  }
+
+  private static final class IndexedEntry {
+    private final String id;
+    private final TrashBinEntry entry;
+
+    private IndexedEntry(String id, TrashBinEntry entry) {
+      this.id = id;
+      this.entry = entry;
+    }
+
+    String getId() {
+      return id;
+    }
+
+    TrashBinEntry getEntry() {
+      return entry;
+    }
+  }
+}
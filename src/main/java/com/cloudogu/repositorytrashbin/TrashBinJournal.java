@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+import sonia.scm.xml.XmlInstantAdapter;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the operations on trash bin entries, which consist of several steps and are in progress. An intent is
+ * written before the first step and removed after the last one, so that after a crash only the entries with a
+ * remaining intent have to be checked.
+ */
+public class TrashBinJournal {
+
+  static final String STORE_NAME = "trash-bin-journal";
+
+  private final DataStoreFactory dataStoreFactory;
+
+  TrashBinJournal(DataStoreFactory dataStoreFactory) {
+    this.dataStoreFactory = dataStoreFactory;
+  }
+
+  /**
+   * Runs the steps of the operation. If one of the steps fails, the intent is kept, so that the operation is
+   * reconciled on the next start.
+   */
+  <T> T record(String repositoryId, Operation operation, Supplier<T> steps) {
+    createStore().put(repositoryId, new Intent(operation, Instant.now()));
+    T result = steps.get();
+    finish(repositoryId);
+    return result;
+  }
+
+  void record(String repositoryId, Operation operation, Runnable steps) {
+    record(repositoryId, operation, () -> {
+      steps.run();
+      return null;
+    });
+  }
+
+  void finish(String repositoryId) {
+    createStore().remove(repositoryId);
+  }
+
+  Map<String, Intent> getAll() {
+    return createStore().getAll();
+  }
+
+  private DataStore<Intent> createStore() {
+    return dataStoreFactory.withType(Intent.class).withName(STORE_NAME).build();
+  }
+
+  public enum Operation {
+    ADD, FINALIZE, RESTORE, REMOVE
+  }
+
+  @Getter
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @XmlRootElement(name = "intent")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class Intent {
+    private Operation operation;
+    @XmlJavaTypeAdapter(XmlInstantAdapter.class)
+    private Instant startedAt;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import sonia.scm.ConcurrentModificationException;
+import sonia.scm.repository.Repository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+
+/**
+ * Serializes operations on the trash bin entry of a single repository, while operations on different repositories
+ * stay fully parallel. A lock exists only as long as it is held or waited for. The locks are not reentrant, so a nested
+ * operation on the same entry is reported as conflict instead of interleaving with the outer one.
+ */
+class TrashBinLocks {
+
+  static final Duration NO_WAIT = Duration.ZERO;
+
+  private final Map<String, EntryLock> locks = new ConcurrentHashMap<>();
+
+  void run(String repositoryId, Duration timeout, Runnable operation) {
+    call(repositoryId, timeout, () -> {
+      operation.run();
+      return null;
+    });
+  }
+
+  /**
+   * Runs the operation while holding the lock for the given repository. If the lock cannot be acquired within the
+   * timeout, a {@link ConcurrentModificationException} is thrown.
+   */
+  <T> T call(String repositoryId, Duration timeout, Supplier<T> operation) {
+    EntryLock lock = locks.compute(repositoryId, (id, existing) -> {
+      EntryLock entryLock = existing == null ? new EntryLock() : existing;
+      entryLock.users++;
+      return entryLock;
+    });
+    try {
+      acquire(repositoryId, lock, timeout);
+      try {
+        return operation.get();
+      } finally {
+        lock.semaphore.release();
+      }
+    } finally {
+      locks.computeIfPresent(repositoryId, (id, existing) -> --existing.users == 0 ? null : existing);
+    }
+  }
+
+  boolean isLocked(String repositoryId) {
+    return locks.containsKey(repositoryId);
+  }
+
+  private void acquire(String repositoryId, EntryLock lock, Duration timeout) {
+    boolean acquired;
+    try {
+      acquired = lock.semaphore.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    }
+    if (!acquired) {
+      throw new ConcurrentModificationException(entity(Repository.class, repositoryId).build());
+    }
+  }
+
+  private static class EntryLock {
+    private final Semaphore semaphore = new Semaphore(1);
+    // guarded by the compute methods of the map
+    private int users;
+  }
+}
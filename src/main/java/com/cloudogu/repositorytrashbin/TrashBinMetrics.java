@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Metrics of the trash bin. The gauges read the in memory state of the expiry index and the usage tracker, so a scrape
+ * never reads the stores.
+ */
+@Singleton
+public class TrashBinMetrics {
+
+  private static final String PREFIX = "scm.trashbin.";
+
+  private final MeterRegistry registry;
+
+  @Inject
+  public TrashBinMetrics(MeterRegistry registry, TrashBinExpiryIndex expiryIndex, TrashBinUsage usage) {
+    this.registry = registry;
+    Gauge.builder(PREFIX + "entries", expiryIndex, TrashBinExpiryIndex::size)
+      .description("Number of entries in the trash bin")
+      .register(registry);
+    Gauge.builder(PREFIX + "stored", usage, TrashBinUsage::getTotalBytes)
+      .description("Disk space used by the snapshots of the trash bin")
+      .baseUnit("bytes")
+      .register(registry);
+  }
+
+  public void snapshotWritten(SnapshotFormat format, Duration duration, long bytes) {
+    String tag = format.name().toLowerCase(Locale.ENGLISH);
+    Timer.builder(PREFIX + "snapshot.duration")
+      .description("Time to write the snapshot of a deleted repository")
+      .tag("format", tag)
+      .register(registry)
+      .record(duration);
+    DistributionSummary.builder(PREFIX + "snapshot.size")
+      .description("Size of written snapshots")
+      .baseUnit("bytes")
+      .tag("format", tag)
+      .register(registry)
+      .record(bytes);
+  }
+
+  public void exportAdmitted(Duration waitTime) {
+    Timer.builder(PREFIX + "export.wait")
+      .description("Time an export waited for a free slot")
+      .register(registry)
+      .record(waitTime);
+  }
+
+  public void exportRejected(String policy) {
+    Counter.builder(PREFIX + "export.rejected")
+      .description("Number of exports rejected, because too many exports were running and waiting")
+      .tag("policy", policy.toLowerCase(Locale.ENGLISH))
+      .register(registry)
+      .increment();
+  }
+
+  public void restored(Duration duration, long bytes) {
+    Timer.builder(PREFIX + "restore.duration")
+      .description("Time to restore a repository from the trash bin")
+      .register(registry)
+      .record(duration);
+    DistributionSummary.builder(PREFIX + "restore.size")
+      .description("Size of restored snapshots")
+      .baseUnit("bytes")
+      .register(registry)
+      .record(bytes);
+  }
+
+  public void cleanupFinished(String reason, CleanupStatistics statistics) {
+    Timer.builder(PREFIX + "cleanup.duration")
+      .description("Duration of trash bin cleanup runs")
+      .tag("reason", reason)
+      .register(registry)
+      .record(Duration.ofMillis(statistics.getDurationMillis()));
+    Counter.builder(PREFIX + "cleanup.purged")
+      .description("Number of entries purged by cleanup runs")
+      .tag("reason", reason)
+      .register(registry)
+      .increment(statistics.getEntriesPurged());
+    Counter.builder(PREFIX + "cleanup.freed")
+      .description("Disk space freed by cleanup runs")
+      .baseUnit("bytes")
+      .tag("reason", reason)
+      .register(registry)
+      .increment(statistics.getBytesFreed());
+    if (statistics.getFailures() > 0) {
+      Counter.builder(PREFIX + "failures")
+        .description("Failed trash bin operations")
+        .tag("operation", "cleanup")
+        .tag("cause", "purge")
+        .register(registry)
+        .increment(statistics.getFailures());
+    }
+  }
+
+  public void failed(String operation, Throwable failure) {
+    Throwable cause = failure.getCause() == null ? failure : failure.getCause();
+    Counter.builder(PREFIX + "failures")
+      .description("Failed trash bin operations")
+      .tag("operation", operation)
+      .tag("cause", cause.getClass().getSimpleName())
+      .register(registry)
+      .increment();
+  }
+}
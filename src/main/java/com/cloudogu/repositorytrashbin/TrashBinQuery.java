@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.base.Strings;
+import lombok.Getter;
+
+import java.util.Locale;
+
+@Getter
+public class TrashBinQuery {
+
+  public static final int DEFAULT_PAGE_SIZE = 10;
+  public static final int MAX_PAGE_SIZE = 100;
+
+  private final int page;
+  private final int pageSize;
+  private final TrashBinSortField sortBy;
+  private final boolean descending;
+  private final String filter;
+  private final String namespace;
+  private final String deletedBy;
+
+  public TrashBinQuery(int page, int pageSize, TrashBinSortField sortBy, boolean descending, String filter, String namespace, String deletedBy) {
+    this.page = Math.max(page, 0);
+    this.pageSize = pageSize < 1 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+    this.sortBy = sortBy;
+    this.descending = descending;
+    this.filter = Strings.emptyToNull(filter);
+    this.namespace = Strings.emptyToNull(namespace);
+    this.deletedBy = Strings.emptyToNull(deletedBy);
+  }
+
+  boolean matches(TrashBinEntry entry) {
+    if (namespace != null && !namespace.equals(entry.getNamespace())) {
+      return false;
+    }
+    if (deletedBy != null && !deletedBy.equals(entry.getDeletedBy())) {
+      return false;
+    }
+    if (filter != null) {
+      String displayName = entry.getNamespace() + "/" + entry.getName();
+      return displayName.toLowerCase(Locale.ENGLISH).contains(filter.toLowerCase(Locale.ENGLISH));
+    }
+    return true;
+  }
+
+  boolean isFiltered() {
+    return filter != null || namespace != null || deletedBy != null;
+  }
+}
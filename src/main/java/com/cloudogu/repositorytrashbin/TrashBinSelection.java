@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.base.Strings;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+/**
+ * Selects trash bin entries for bulk operations, either by their ids or by a filter. If ids and a filter are given,
+ * only entries matching both are selected.
+ */
+@Getter
+public class TrashBinSelection {
+
+  private final Collection<String> repositoryIds;
+  private final String namespace;
+  private final String deletedBy;
+  private final Instant deletedAfter;
+  private final Instant deletedBefore;
+
+  public TrashBinSelection(Collection<String> repositoryIds, String namespace, String deletedBy, Instant deletedAfter, Instant deletedBefore) {
+    this.repositoryIds = repositoryIds == null ? Collections.emptySet() : new LinkedHashSet<>(repositoryIds);
+    this.namespace = Strings.emptyToNull(namespace);
+    this.deletedBy = Strings.emptyToNull(deletedBy);
+    this.deletedAfter = deletedAfter;
+    this.deletedBefore = deletedBefore;
+  }
+
+  boolean isEmpty() {
+    return repositoryIds.isEmpty() && namespace == null && deletedBy == null && deletedAfter == null && deletedBefore == null;
+  }
+
+  boolean matches(String repositoryId, TrashBinEntry entry) {
+    if (!repositoryIds.isEmpty() && !repositoryIds.contains(repositoryId)) {
+      return false;
+    }
+    if (namespace != null && !namespace.equals(entry.getNamespace())) {
+      return false;
+    }
+    if (deletedBy != null && !deletedBy.equals(entry.getDeletedBy())) {
+      return false;
+    }
+    if (deletedAfter != null && (entry.getDeletedAt() == null || entry.getDeletedAt().isBefore(deletedAfter))) {
+      return false;
+    }
+    return deletedBefore == null || (entry.getDeletedAt() != null && entry.getDeletedAt().isBefore(deletedBefore));
+  }
+}
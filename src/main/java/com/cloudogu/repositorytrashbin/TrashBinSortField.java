@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.function.Function;
+
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+
+public enum TrashBinSortField {
+  DELETED_AT("deletedAt", TrashBinEntry::getDeletedAt),
+  NAMESPACE("namespace", TrashBinEntry::getNamespace),
+  NAME("name", TrashBinEntry::getName),
+  DELETED_BY("deletedBy", TrashBinEntry::getDeletedBy);
+
+  private final String parameter;
+  private final Comparator<TrashBinEntry> comparator;
+
+  <T extends Comparable<? super T>> TrashBinSortField(String parameter, Function<TrashBinEntry, T> extractor) {
+    this.parameter = parameter;
+    this.comparator = Comparator.comparing(extractor, nullsFirst(naturalOrder()));
+  }
+
+  public String getParameter() {
+    return parameter;
+  }
+
+  Comparator<TrashBinEntry> getComparator() {
+    return comparator;
+  }
+
+  public static TrashBinSortField fromParameter(String parameter) {
+    for (TrashBinSortField field : values()) {
+      if (field.parameter.equals(parameter)) {
+        return field;
+      }
+    }
+    return DELETED_AT;
+  }
+}
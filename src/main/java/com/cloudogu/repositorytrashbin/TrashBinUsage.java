@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Keeps track of the disk space used by the snapshots in the trash bin. The total is updated whenever a snapshot is
+ * written or removed, so it does not have to be computed from all blobs again.
+ */
+@Singleton
+public class TrashBinUsage {
+
+  static final String STORE_NAME = "trash-bin-usage";
+
+  private final ConfigurationStoreFactory storeFactory;
+
+  private Long totalBytes;
+
+  @Inject
+  public TrashBinUsage(ConfigurationStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  public synchronized boolean isInitialized() {
+    return totalBytes != null || createStore().getOptional().isPresent();
+  }
+
+  public synchronized void initialize(long bytes) {
+    totalBytes = bytes;
+    persist();
+  }
+
+  public synchronized void add(long bytes) {
+    totalBytes = Math.max(0, getTotalBytes() + bytes);
+    persist();
+  }
+
+  public synchronized long getTotalBytes() {
+    if (totalBytes == null) {
+      totalBytes = createStore().getOptional().map(StoredUsage::getTotalBytes).orElse(0L);
+    }
+    return totalBytes;
+  }
+
+  private void persist() {
+    createStore().set(new StoredUsage(totalBytes));
+  }
+
+  private ConfigurationStore<StoredUsage> createStore() {
+    return storeFactory.withType(StoredUsage.class).withName(STORE_NAME).build();
+  }
+
+  @Getter
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @XmlRootElement(name = "usage")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class StoredUsage {
+    private long totalBytes;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Computes the checksum of the bytes read from the wrapped stream and compares it with the expected checksum, as soon
+ * as the end of the stream has been reached. If the stream is closed before, the remaining bytes are read on close.
+ */
+class VerifyingInputStream extends FilterInputStream {
+
+  private final String expectedChecksum;
+  private boolean verified = false;
+
+  VerifyingInputStream(InputStream in, String expectedChecksum) {
+    super(new HashingInputStream(Hashing.sha256(), in));
+    this.expectedChecksum = expectedChecksum;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b < 0) {
+      verify();
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read < 0) {
+      verify();
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // skipped bytes have to be hashed as well
+    byte[] buffer = new byte[(int) Math.min(n, 8192)];
+    int read = read(buffer, 0, buffer.length);
+    return Math.max(read, 0);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      byte[] buffer = new byte[8192];
+      while (!verified) {
+        read(buffer, 0, buffer.length);
+      }
+    } finally {
+      super.close();
+    }
+  }
+
+  private void verify() throws IOException {
+    if (verified) {
+      return;
+    }
+    verified = true;
+    String checksum = ((HashingInputStream) in).hash().toString();
+    if (!expectedChecksum.equals(checksum)) {
+      throw new ChecksumMismatchException(expectedChecksum, checksum);
+    }
+  }
+
+  static class ChecksumMismatchException extends IOException {
+    ChecksumMismatchException(String expected, String actual) {
+      super("checksum of snapshot is " + actual + ", but " + expected + " has been expected");
+    }
+  }
+}
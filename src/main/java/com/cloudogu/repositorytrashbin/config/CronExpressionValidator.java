@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.config;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses cron expressions in the format of the scheduler of SCM-Manager: seconds, minutes, hours, day of month, month,
+ * day of week and an optional year. Exactly one of day of month and day of week has to be {@code ?}.
+ */
+public class CronExpressionValidator implements ConstraintValidator<CronExpression, String> {
+
+  private static final List<String> MONTHS = Arrays.asList("JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC");
+  private static final List<String> DAYS = Arrays.asList("SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT");
+
+  @Override
+  public boolean isValid(String value, ConstraintValidatorContext context) {
+    // like the other constraints, a missing value is accepted and replaced by the default
+    return value == null || isValid(value);
+  }
+
+  public static boolean isValid(String expression) {
+    String[] fields = expression.trim().split("\\s+");
+    if (fields.length < 6 || fields.length > 7) {
+      return false;
+    }
+    boolean anyDayOfMonth = "?".equals(fields[3]);
+    boolean anyDayOfWeek = "?".equals(fields[5]);
+    return anyDayOfMonth != anyDayOfWeek
+      && isValidField(fields[0], 0, 59, null)
+      && isValidField(fields[1], 0, 59, null)
+      && isValidField(fields[2], 0, 23, null)
+      && (anyDayOfMonth || isValidDayOfMonth(fields[3]))
+      && isValidField(fields[4], 1, 12, MONTHS)
+      && (anyDayOfWeek || isValidDayOfWeek(fields[5]))
+      && (fields.length == 6 || isValidField(fields[6], 1970, 2099, null));
+  }
+
+  private static boolean isValidDayOfMonth(String field) {
+    if (field.equals("L") || field.equals("LW")) {
+      return true;
+    }
+    if (field.startsWith("L-")) {
+      return isValidValue(field.substring(2), 0, 30, null);
+    }
+    if (field.endsWith("W")) {
+      return isValidValue(field.substring(0, field.length() - 1), 1, 31, null);
+    }
+    return isValidField(field, 1, 31, null);
+  }
+
+  private static boolean isValidDayOfWeek(String field) {
+    if (field.equals("L")) {
+      return true;
+    }
+    int hash = field.indexOf('#');
+    if (hash >= 0) {
+      return isValidValue(field.substring(0, hash), 1, 7, DAYS) && isValidValue(field.substring(hash + 1), 1, 5, null);
+    }
+    if (field.endsWith("L")) {
+      return isValidValue(field.substring(0, field.length() - 1), 1, 7, DAYS);
+    }
+    return isValidField(field, 1, 7, DAYS);
+  }
+
+  private static boolean isValidField(String field, int min, int max, List<String> names) {
+    for (String item : field.split(",", -1)) {
+      if (!isValidItem(item, min, max, names)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isValidItem(String item, int min, int max, List<String> names) {
+    String range = item;
+    int slash = item.indexOf('/');
+    if (slash >= 0) {
+      if (!isValidValue(item.substring(slash + 1), 1, max, null)) {
+        return false;
+      }
+      range = item.substring(0, slash);
+    }
+    if (range.equals("*")) {
+      return true;
+    }
+    int dash = range.indexOf('-');
+    if (dash >= 0) {
+      return isValidValue(range.substring(0, dash), min, max, names) && isValidValue(range.substring(dash + 1), min, max, names);
+    }
+    return isValidValue(range, min, max, names);
+  }
+
+  private static boolean isValidValue(String value, int min, int max, List<String> names) {
+    if (names != null && names.contains(value.toUpperCase(Locale.ENGLISH))) {
+      return true;
+    }
+    if (value.isEmpty() || value.length() > 4 || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+      return false;
+    }
+    int number = Integer.parseInt(value);
+    return number >= min && number <= max;
+  }
+}
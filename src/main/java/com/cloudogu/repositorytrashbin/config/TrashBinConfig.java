@@ -22,6 +22,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
 import jakarta.xml.bind.annotation.XmlRootElement;
 
@@ -31,7 +33,94 @@ import jakarta.xml.bind.annotation.XmlRootElement;
 @AllArgsConstructor
 @XmlRootElement
 public class TrashBinConfig {
+
+  public static final String SNAPSHOT_MODE_EXPORT = "EXPORT";
+  public static final String SNAPSHOT_MODE_STAGED = "STAGED";
+  public static final String SNAPSHOT_MODE_DIRECTORY = "DIRECTORY";
+  public static final String COMPRESSION_NONE = "NONE";
+  public static final String COMPRESSION_GZIP = "GZIP";
+  public static final String STORAGE_MODE_BLOB = "BLOB";
+  public static final String STORAGE_MODE_CHUNKED = "CHUNKED";
+  public static final String DEFAULT_CLEANUP_CRON = "0 0 2 * * ?";
+  public static final String SATURATION_POLICY_WAIT = "WAIT";
+  public static final String SATURATION_POLICY_FAIL = "FAIL";
+  public static final String SATURATION_POLICY_DEFER = "DEFER";
+  public static final String LOW_SPACE_POLICY_FAIL = "FAIL";
+  public static final String LOW_SPACE_POLICY_EVICT = "EVICT";
+  public static final String LOW_SPACE_POLICY_WARN = "WARN";
+
   @Include
   @Pattern(regexp = "7|14|30")
   private String retentionTime = "30";
+  @Include
+  @Pattern(regexp = "EXPORT|STAGED|DIRECTORY")
+  private String snapshotMode = SNAPSHOT_MODE_EXPORT;
+  @Include
+  @Min(0)
+  private int burstThreshold = 5;
+  @Include
+  @Min(1)
+  private int maxConcurrentExports = 4;
+  // limits the waiting exports only for the policies FAIL and DEFER, with WAIT every deletion waits for a slot
+  @Include
+  @Min(0)
+  private int maxQueuedExports = 8;
+  @Include
+  @Pattern(regexp = "WAIT|FAIL|DEFER")
+  private String exportSaturationPolicy = SATURATION_POLICY_WAIT;
+  @Include
+  @Pattern(regexp = "NONE|GZIP")
+  private String compression = COMPRESSION_NONE;
+  @Include
+  @Min(1)
+  @Max(9)
+  private int compressionLevel = 6;
+  @Include
+  @Pattern(regexp = "BLOB|CHUNKED")
+  private String storageMode = STORAGE_MODE_BLOB;
+  @Include
+  @Min(1)
+  @Max(16)
+  private int cleanupThreads = 2;
+  @Include
+  @Min(0)
+  private int cleanupDeletionsPerSecond = 0;
+  @Include
+  @Min(0)
+  private int cleanupMegabytesPerSecond = 0;
+  @Include
+  @Min(0)
+  private int cleanupMaxLoad = 100;
+  @Include
+  @CronExpression
+  private String cleanupCron = DEFAULT_CLEANUP_CRON;
+  @Include
+  @Min(0)
+  private int startupPurgeDelaySeconds = 300;
+  @Include
+  @Min(0)
+  private int startupPurgeJitterSeconds = 60;
+  @Include
+  @Min(0)
+  private int scrubMegabytesPerRun = 1024;
+  @Include
+  @Min(0)
+  private int scrubMegabytesPerSecond = 10;
+  @Include
+  @Min(0)
+  private int quotaMegabytes = 0;
+  @Include
+  @Min(1)
+  @Max(100)
+  private int quotaHighWatermark = 90;
+  @Include
+  @Min(0)
+  @Max(100)
+  private int quotaLowWatermark = 75;
+  @Include
+  @Min(0)
+  private int freeSpaceReserveMegabytes = 1024;
+  @Include
+  @Pattern(regexp = "WARN|FAIL|EVICT")
+  private String lowSpacePolicy = LOW_SPACE_POLICY_WARN;
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.migration;
+
+import com.cloudogu.repositorytrashbin.TrashBinEntry;
+import sonia.scm.migration.UpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.store.ConfigurationEntryStore;
+import sonia.scm.store.ConfigurationEntryStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+import sonia.scm.version.Version;
+
+import jakarta.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.ENTRY_STORE_NAME;
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.STORE_NAME;
+
+/**
+ * Moves the trash bin entries from the configuration entry store, which keeps all entries in one file, to a data
+ * store with one file for each entry.
+ */
+@Extension
+public class TrashBinEntryStoreUpdateStep implements UpdateStep {
+
+  private final ConfigurationEntryStoreFactory storeFactory;
+  private final DataStoreFactory dataStoreFactory;
+
+  @Inject
+  public TrashBinEntryStoreUpdateStep(ConfigurationEntryStoreFactory storeFactory, DataStoreFactory dataStoreFactory) {
+    this.storeFactory = storeFactory;
+    this.dataStoreFactory = dataStoreFactory;
+  }
+
+  @Override
+  public void doUpdate() {
+    ConfigurationEntryStore<TrashBinEntry> legacyStore = storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+    DataStore<TrashBinEntry> entryStore = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+
+    Map<String, TrashBinEntry> legacyEntries = new HashMap<>(legacyStore.getAll());
+    if (!legacyEntries.isEmpty()) {
+      legacyEntries.forEach(entryStore::put);
+      legacyStore.clear();
+    }
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("2.0.0");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "sonia.scm.plugin.trashBinEntry";
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.migration;
+
+import com.cloudogu.repositorytrashbin.SnapshotFormat;
+import com.cloudogu.repositorytrashbin.SnapshotStatus;
+import com.cloudogu.repositorytrashbin.TrashBinEntry;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.migration.UpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.ConfigurationEntryStore;
+import sonia.scm.store.ConfigurationEntryStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+import sonia.scm.version.Version;
+import sonia.scm.xml.XmlInstantAdapter;
+
+import jakarta.inject.Inject;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.REPOSITORY_STORE_NAME;
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.STORE_NAME;
+
+@Extension
+public class TrashBinEntryUpdateStep implements UpdateStep {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TrashBinEntryUpdateStep.class);
+
+  static final String UNKNOWN_NAMESPACE = "unknown";
+
+  private final ConfigurationEntryStoreFactory storeFactory;
+  private final DataStoreFactory dataStoreFactory;
+
+  @Inject
+  public TrashBinEntryUpdateStep(ConfigurationEntryStoreFactory storeFactory, DataStoreFactory dataStoreFactory) {
+    this.storeFactory = storeFactory;
+    this.dataStoreFactory = dataStoreFactory;
+  }
+
+  @Override
+  public void doUpdate() {
+    Map<String, LegacyTrashBinEntry> legacyEntries = new HashMap<>(
+      storeFactory.withType(LegacyTrashBinEntry.class).withName(STORE_NAME).build().getAll()
+    );
+    ConfigurationEntryStore<TrashBinEntry> entryStore = storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+    DataStore<Repository> repositoryStore = dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build();
+
+    legacyEntries.forEach((id, legacyEntry) -> {
+      Repository repository = legacyEntry.getRepository();
+      if (repository != null) {
+        repositoryStore.put(id, repository);
+        TrashBinEntry entry = new TrashBinEntry(repository, legacyEntry.getDeletedBy(), legacyEntry.getDeletedAt(), legacyEntry.getStatus(), legacyEntry.getFormat());
+        entry.setRepositoryId(id);
+        entryStore.put(id, entry);
+      } else {
+        LOG.warn("trash bin entry {} has no repository, migrating it as corrupt placeholder which can only be deleted", id);
+        entryStore.put(id, createPlaceholder(id, legacyEntry));
+      }
+    });
+  }
+
+  /**
+   * Creates an entry for a legacy entry without repository. Without the repository the snapshot cannot be restored,
+   * but the entry stays visible, so that it can be deleted together with its snapshot.
+   */
+  private TrashBinEntry createPlaceholder(String id, LegacyTrashBinEntry legacyEntry) {
+    TrashBinEntry entry = new TrashBinEntry();
+    entry.setRepositoryId(id);
+    entry.setNamespace(UNKNOWN_NAMESPACE);
+    entry.setName(id);
+    entry.setDeletedBy(legacyEntry.getDeletedBy());
+    entry.setDeletedAt(legacyEntry.getDeletedAt());
+    entry.setStatus(SnapshotStatus.CORRUPT);
+    entry.setFormat(legacyEntry.getFormat());
+    return entry;
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("1.0.0");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "sonia.scm.plugin.trashBinEntry";
+  }
+
+  @Getter
+  @Setter
+  @NoArgsConstructor
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class LegacyTrashBinEntry {
+    private Repository repository;
+    private String deletedBy;
+    @XmlJavaTypeAdapter(XmlInstantAdapter.class)
+    private Instant deletedAt;
+    private SnapshotStatus status;
+    private SnapshotFormat format;
+  }
+}
@@ -19,29 +19,55 @@ import {
   ConfirmAlert,
   DateFromNow,
   ErrorNotification,
+  FileSize,
+  FilterInput,
   Level,
   Loading,
   Notification,
+  Paginator,
+  Select,
   Table,
+  Tag,
   TextColumn,
   Title
 } from "@scm-manager/ui-components";
 import React, { FC, ReactElement, useState } from "react";
-import { useDeleteTrashBin, useRestoreTrashBinEntry, useTrashBin } from "./hooks";
+import { useDeleteAllTrashBin, useDeleteTrashBin, useRestoreTrashBinEntry, useTrashBin } from "./hooks";
 import { useTranslation } from "react-i18next";
-import { TrashBinEntry, TrashBinEntryCollection } from "./types";
+import { BulkResult, SORT_FIELD_OPTIONS, SortField, TrashBinEntry, TrashBinEntryCollection } from "./types";
 import { Link } from "@scm-manager/ui-types";
 import { Button } from "@scm-manager/ui-buttons";
 import { useDocumentTitle } from "@scm-manager/ui-core";
 
+const createListLink = (link: string, sortBy: SortField, filter: string) => {
+  const params = new URLSearchParams({ sortBy, desc: String(sortBy === "deletedAt") });
+  if (filter) {
+    params.set("q", filter);
+  }
+  return `${link}?${params.toString()}`;
+};
+
 const TrashBin: FC<{
   link: string;
 }> = ({ link }) => {
-  const { data, isLoading, error: loadError } = useTrashBin(link);
+  const [sortBy, setSortBy] = useState<SortField>("deletedAt");
+  const [filter, setFilter] = useState("");
+  const [pageLink, setPageLink] = useState<string | undefined>();
+  const { data, isLoading, error: loadError } = useTrashBin(pageLink || createListLink(link, sortBy, filter));
   const [error, setError] = useState<Error | undefined | null>();
+  const [skipped, setSkipped] = useState<BulkResult[]>([]);
   const [t] = useTranslation("plugins");
   useDocumentTitle(t("scm-repository-trash-bin-plugin.navLink"));
 
+  const changeSortBy = (value: string) => {
+    setSortBy(value as SortField);
+    setPageLink(undefined);
+  };
+  const changeFilter = (value: string) => {
+    setFilter(value);
+    setPageLink(undefined);
+  };
+
   let content: ReactElement;
   let deleteAllButton: ReactElement | undefined;
 
@@ -52,44 +78,94 @@ const TrashBin: FC<{
   } else if (!data?._embedded?.entries.length) {
     content = <Notification type="info">{t("scm-repository-trash-bin-plugin.trashBin.empty")}</Notification>;
   } else {
-    deleteAllButton = <DeleteAllButton setError={setError} entries={data} />;
+    deleteAllButton = <DeleteAllButton setError={setError} setSkipped={setSkipped} entries={data} />;
     content = (
-      <div className="table-container">
-        <Table data={data._embedded.entries} sortable={false}>
-          <Column
-            className="is-vertical-align-middle"
-            header={t("scm-repository-trash-bin-plugin.trashBin.table.repository")}
-          >
-            {(row: TrashBinEntry) => `${row.namespace}/${row.name}`}
-          </Column>
-          <TextColumn
-            className="is-vertical-align-middle"
-            dataKey="deletedBy"
-            header={t("scm-repository-trash-bin-plugin.trashBin.table.deletedBy")}
-          />
-          <Column
-            className="is-vertical-align-middle"
-            header={t("scm-repository-trash-bin-plugin.trashBin.table.deletedAt")}
-          >
-            {(row: TrashBinEntry) => <DateFromNow date={row.deletedAt} />}
-          </Column>
-          <Column header="">
-            {(row: TrashBinEntry) => (
-              <div className="is-flex is-justify-content-end">
-                <DeleteButton setError={setError} entry={row} />
-                {row._links.restore ? <RestoreButton setError={setError} entry={row} /> : null}
-              </div>
-            )}
-          </Column>
-        </Table>
-      </div>
+      <>
+        <div className="table-container">
+          <Table data={data._embedded.entries} sortable={false}>
+            <Column
+              className="is-vertical-align-middle"
+              header={t("scm-repository-trash-bin-plugin.trashBin.table.repository")}
+            >
+              {(row: TrashBinEntry) => (
+                <>
+                  {`${row.namespace}/${row.name}`}
+                  {row.status && row.status !== "READY" ? (
+                    <Tag
+                      className="ml-2"
+                      color={row.status === "FAILED" || row.status === "CORRUPT" ? "danger" : "info"}
+                      label={t(`scm-repository-trash-bin-plugin.trashBin.status.${row.status}`)}
+                    />
+                  ) : null}
+                </>
+              )}
+            </Column>
+            <TextColumn
+              className="is-vertical-align-middle"
+              dataKey="deletedBy"
+              header={t("scm-repository-trash-bin-plugin.trashBin.table.deletedBy")}
+            />
+            <Column
+              className="is-vertical-align-middle"
+              header={t("scm-repository-trash-bin-plugin.trashBin.table.deletedAt")}
+            >
+              {(row: TrashBinEntry) => <DateFromNow date={row.deletedAt} />}
+            </Column>
+            <Column className="is-vertical-align-middle" header={t("scm-repository-trash-bin-plugin.trashBin.table.size")}>
+              {(row: TrashBinEntry) => (row.status === "PENDING" ? null : <FileSize bytes={row.size} />)}
+            </Column>
+            <Column header="">
+              {(row: TrashBinEntry) => (
+                <div className="is-flex is-justify-content-end">
+                  <DeleteButton setError={setError} entry={row} />
+                  {row._links.restore ? <RestoreButton setError={setError} entry={row} /> : null}
+                </div>
+              )}
+            </Column>
+          </Table>
+        </div>
+        <Paginator collection={data} page={data.page + 1} onPageChange={setPageLink} />
+        <p className="mt-4 has-text-grey">
+          {t("scm-repository-trash-bin-plugin.trashBin.usedSpace")} <FileSize bytes={data.usedBytes} />
+        </p>
+      </>
     );
   }
 
   return (
     <>
       <Level left={<Title title={t("scm-repository-trash-bin-plugin.trashBin.title")} />} right={deleteAllButton} />
+      <Level
+        left={
+          <Select
+            label={t("scm-repository-trash-bin-plugin.trashBin.sortBy.label")}
+            value={sortBy}
+            onChange={changeSortBy}
+            options={SORT_FIELD_OPTIONS.map(value => ({
+              value,
+              label: t(`scm-repository-trash-bin-plugin.trashBin.sortBy.options.${value}`)
+            }))}
+          />
+        }
+        right={
+          <FilterInput
+            value={filter}
+            filter={changeFilter}
+            placeholder={t("scm-repository-trash-bin-plugin.trashBin.filter")}
+          />
+        }
+      />
       {error ? <ErrorNotification error={error} onClose={() => setError(null)} /> : null}
+      {skipped.length ? (
+        <Notification type="warning" onClose={() => setSkipped([])}>
+          {t("scm-repository-trash-bin-plugin.trashBin.skipped", { count: skipped.length })}
+          <ul className="mt-2">
+            {skipped.map(result => (
+              <li key={result.repositoryId}>{result.error || result.repositoryId}</li>
+            ))}
+          </ul>
+        </Notification>
+      ) : null}
       {content}
     </>
   );
@@ -112,20 +188,34 @@ const DeleteButton: FC<ButtonProps> = ({ entry, setError }) => {
 
 const RestoreButton: FC<ButtonProps> = ({ entry, setError }) => {
   const [t] = useTranslation("plugins");
-  const { mutate: restore, isLoading } = useRestoreTrashBinEntry((entry._links?.restore as Link).href, setError);
+  const { restore, isLoading, task } = useRestoreTrashBinEntry((entry._links?.restore as Link).href, setError);
   return (
-    <Button className="ml-3" variant="primary" isLoading={isLoading} onClick={() => restore()}>
-      {t("scm-repository-trash-bin-plugin.trashBin.table.restore")}
-    </Button>
+    <>
+      {task?.state === "RUNNING" && task.totalBytes > 0 ? (
+        <span className="ml-3 is-align-self-center has-text-grey">
+          {t("scm-repository-trash-bin-plugin.trashBin.restoreProgress", {
+            progress: Math.min(100, Math.round((task.bytesProcessed * 100) / task.totalBytes))
+          })}
+        </span>
+      ) : null}
+      <Button className="ml-3" variant="primary" isLoading={isLoading} onClick={restore}>
+        {t("scm-repository-trash-bin-plugin.trashBin.table.restore")}
+      </Button>
+    </>
   );
 };
 
-const DeleteAllButton: FC<{ entries: TrashBinEntryCollection; setError: (error: Error) => void }> = ({
-  entries,
-  setError
-}) => {
+const DeleteAllButton: FC<{
+  entries: TrashBinEntryCollection;
+  setError: (error: Error) => void;
+  setSkipped: (skipped: BulkResult[]) => void;
+}> = ({ entries, setError, setSkipped }) => {
   const [t] = useTranslation("plugins");
-  const { mutate: deleteAll, isLoading } = useDeleteTrashBin((entries._links?.deleteAll as Link).href, setError);
+  const { mutate: deleteAll, isLoading } = useDeleteAllTrashBin(
+    (entries._links?.deleteAll as Link).href,
+    setSkipped,
+    setError
+  );
   const [showConfirmAlert, setShowConfirmAlert] = useState(false);
 
   return (
@@ -18,7 +18,15 @@ import React, { FC } from "react";
 import { useTranslation } from "react-i18next";
 import { Title } from "@scm-manager/ui-core";
 import { ConfigurationForm, Form } from "@scm-manager/ui-forms";
-import { RETENTION_TIME_OPTIONS, TrashBinConfig } from "./types";
+import {
+  COMPRESSION_OPTIONS,
+  LOW_SPACE_POLICY_OPTIONS,
+  RETENTION_TIME_OPTIONS,
+  SATURATION_POLICY_OPTIONS,
+  SNAPSHOT_MODE_OPTIONS,
+  STORAGE_MODE_OPTIONS,
+  TrashBinConfig
+} from "./types";
 
 const TrashBinConfiguration: FC<{ link: string }> = ({ link }) => {
   const [t] = useTranslation("plugins");
@@ -30,15 +38,91 @@ const TrashBinConfiguration: FC<{ link: string }> = ({ link }) => {
         link={link}
         translationPath={["plugins", "scm-repository-trash-bin-plugin.config.form"]}
       >
-        <Form.Row>
-          <Form.Select name="retentionTime">
-            {RETENTION_TIME_OPTIONS.map(value => (
-              <option value={value} key={value}>
-                {value}
-              </option>
-            ))}
-          </Form.Select>
-        </Form.Row>
+        {({ watch }) => (
+          <>
+            <Form.Row>
+              <Form.Select name="retentionTime">
+                {RETENTION_TIME_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {value}
+                  </option>
+                ))}
+              </Form.Select>
+            </Form.Row>
+            <Form.Row>
+              <Form.Select name="snapshotMode">
+                {SNAPSHOT_MODE_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {t(`scm-repository-trash-bin-plugin.config.form.snapshotMode.options.${value}`)}
+                  </option>
+                ))}
+              </Form.Select>
+              <Form.Input name="burstThreshold" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="maxConcurrentExports" type="number" />
+              {watch("exportSaturationPolicy") !== "WAIT" ? <Form.Input name="maxQueuedExports" type="number" /> : null}
+              <Form.Select name="exportSaturationPolicy">
+                {SATURATION_POLICY_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {t(`scm-repository-trash-bin-plugin.config.form.exportSaturationPolicy.options.${value}`)}
+                  </option>
+                ))}
+              </Form.Select>
+            </Form.Row>
+            <Form.Row>
+              <Form.Select name="compression">
+                {COMPRESSION_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {t(`scm-repository-trash-bin-plugin.config.form.compression.options.${value}`)}
+                  </option>
+                ))}
+              </Form.Select>
+              <Form.Input name="compressionLevel" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Select name="storageMode">
+                {STORAGE_MODE_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {t(`scm-repository-trash-bin-plugin.config.form.storageMode.options.${value}`)}
+                  </option>
+                ))}
+              </Form.Select>
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="cleanupThreads" type="number" />
+              <Form.Input name="cleanupDeletionsPerSecond" type="number" />
+              <Form.Input name="cleanupMegabytesPerSecond" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="cleanupCron" />
+              <Form.Input name="cleanupMaxLoad" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="startupPurgeDelaySeconds" type="number" />
+              <Form.Input name="startupPurgeJitterSeconds" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="scrubMegabytesPerRun" type="number" />
+              <Form.Input name="scrubMegabytesPerSecond" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="quotaMegabytes" type="number" />
+              <Form.Input name="quotaHighWatermark" type="number" />
+              <Form.Input name="quotaLowWatermark" type="number" />
+            </Form.Row>
+            <Form.Row>
+              <Form.Input name="freeSpaceReserveMegabytes" type="number" />
+              <Form.Select name="lowSpacePolicy">
+                {LOW_SPACE_POLICY_OPTIONS.map(value => (
+                  <option value={value} key={value}>
+                    {t(`scm-repository-trash-bin-plugin.config.form.lowSpacePolicy.options.${value}`)}
+                  </option>
+                ))}
+              </Form.Select>
+            </Form.Row>
+          </>
+        )}
       </ConfigurationForm>
     </>
   );
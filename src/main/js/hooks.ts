@@ -16,18 +16,42 @@
 
 import { useMutation, useQuery, useQueryClient, UseMutationOptions } from "react-query";
 import { apiClient } from "@scm-manager/ui-api";
-import { TrashBinEntryCollection } from "./types";
+import { Link } from "@scm-manager/ui-types";
+import { BulkResult, RestoreTask, TrashBinEntryCollection } from "./types";
+
+const RESTORE_TASK_POLL_INTERVAL = 1000;
 
 export const useTrashBin = (link: string) =>
-  useQuery<TrashBinEntryCollection, Error>("trashBin", () => apiClient.get(link).then(r => r.json()));
+  useQuery<TrashBinEntryCollection, Error>(["trashBin", link], () => apiClient.get(link).then(r => r.json()), {
+    keepPreviousData: true
+  });
 
-export const useRestoreTrashBinEntry = (link: string, onError: UseMutationOptions<unknown, Error>["onError"]) => {
+export const useRestoreTrashBinEntry = (link: string, onError: (error: Error) => void) => {
   const queryClient = useQueryClient();
-  return useMutation<unknown, Error>({
-    mutationFn: () => apiClient.post(link),
-    onSuccess: () => queryClient.invalidateQueries("trashBin"),
+  const { mutate, data: startedTask, isLoading, reset } = useMutation<RestoreTask, Error>({
+    mutationFn: () => apiClient.post(link).then(response => response.json()),
     onError
   });
+  const taskLink = (startedTask?._links.self as Link | undefined)?.href;
+  const { data: task } = useQuery<RestoreTask, Error>(
+    ["trashBinRestoreTask", taskLink],
+    () => apiClient.get(taskLink as string).then(response => response.json()),
+    {
+      enabled: !!taskLink,
+      refetchInterval: RESTORE_TASK_POLL_INTERVAL,
+      onSuccess: restoreTask => {
+        if (restoreTask.state === "DONE") {
+          reset();
+          queryClient.invalidateQueries("trashBin");
+        } else if (restoreTask.state === "FAILED") {
+          reset();
+          onError(new Error(restoreTask.error));
+        }
+      },
+      onError
+    }
+  );
+  return { restore: () => mutate(), isLoading: isLoading || !!taskLink, task };
 };
 
 export const useDeleteTrashBin = (link: string, onError: UseMutationOptions<unknown, Error>["onError"]) => {
@@ -38,3 +62,27 @@ export const useDeleteTrashBin = (link: string, onError: UseMutationOptions<unkn
     onError
   });
 };
+
+const parseBulkResults = (body: string): BulkResult[] =>
+  body
+    .split("\n")
+    .filter(line => line.trim())
+    .map(line => JSON.parse(line));
+
+export const useDeleteAllTrashBin = (
+  link: string,
+  onSkipped: (skipped: BulkResult[]) => void,
+  onError: UseMutationOptions<BulkResult[], Error>["onError"]
+) => {
+  const queryClient = useQueryClient();
+  return useMutation<BulkResult[], Error>({
+    // entries, which are in use by another operation, are skipped and reported line by line
+    mutationFn: () =>
+      apiClient.delete(link).then(response => (response.status === 204 ? [] : response.text().then(parseBulkResults))),
+    onSuccess: skipped => {
+      onSkipped(skipped);
+      return queryClient.invalidateQueries("trashBin");
+    },
+    onError
+  });
+};
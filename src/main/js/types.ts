@@ -14,14 +14,48 @@
  * along with this program. If not, see https://www.gnu.org/licenses/.
  */
 
-import { HalRepresentationWithEmbedded, HalRepresentation } from "@scm-manager/ui-types";
+import { HalRepresentation, PagedCollection } from "@scm-manager/ui-types";
 
 export const RETENTION_TIME_OPTIONS = ["7", "14", "30"] as const;
+export const SNAPSHOT_MODE_OPTIONS = ["EXPORT", "STAGED", "DIRECTORY"] as const;
+export const COMPRESSION_OPTIONS = ["NONE", "GZIP"] as const;
+export const STORAGE_MODE_OPTIONS = ["BLOB", "CHUNKED"] as const;
+export const SATURATION_POLICY_OPTIONS = ["WAIT", "FAIL", "DEFER"] as const;
+export const LOW_SPACE_POLICY_OPTIONS = ["WARN", "FAIL", "EVICT"] as const;
+export const SORT_FIELD_OPTIONS = ["deletedAt", "namespace", "name", "deletedBy"] as const;
 
 type RetentionTime = typeof RETENTION_TIME_OPTIONS[number];
+type SnapshotMode = typeof SNAPSHOT_MODE_OPTIONS[number];
+type Compression = typeof COMPRESSION_OPTIONS[number];
+type StorageMode = typeof STORAGE_MODE_OPTIONS[number];
+type SaturationPolicy = typeof SATURATION_POLICY_OPTIONS[number];
+type LowSpacePolicy = typeof LOW_SPACE_POLICY_OPTIONS[number];
+export type SortField = typeof SORT_FIELD_OPTIONS[number];
 
 export type TrashBinConfig = HalRepresentation & {
   retentionTime: RetentionTime;
+  snapshotMode: SnapshotMode;
+  burstThreshold: number;
+  maxConcurrentExports: number;
+  maxQueuedExports: number;
+  exportSaturationPolicy: SaturationPolicy;
+  compression: Compression;
+  compressionLevel: number;
+  storageMode: StorageMode;
+  cleanupThreads: number;
+  cleanupDeletionsPerSecond: number;
+  cleanupMegabytesPerSecond: number;
+  cleanupMaxLoad: number;
+  cleanupCron: string;
+  startupPurgeDelaySeconds: number;
+  startupPurgeJitterSeconds: number;
+  scrubMegabytesPerRun: number;
+  scrubMegabytesPerSecond: number;
+  quotaMegabytes: number;
+  quotaHighWatermark: number;
+  quotaLowWatermark: number;
+  freeSpaceReserveMegabytes: number;
+  lowSpacePolicy: LowSpacePolicy;
 };
 
 export type TrashBinEntry = HalRepresentation & {
@@ -29,6 +63,27 @@ export type TrashBinEntry = HalRepresentation & {
   name: string;
   deletedAt: string;
   deletedBy: string;
+  status: "PENDING" | "READY" | "FAILED" | "CORRUPT";
+  size: number;
 };
 
-export type TrashBinEntryCollection = HalRepresentationWithEmbedded<{ entries: TrashBinEntry[] }>;
+export type RestoreTask = HalRepresentation & {
+  id: string;
+  repositoryId: string;
+  namespace: string;
+  name: string;
+  state: "QUEUED" | "RUNNING" | "DONE" | "FAILED";
+  bytesProcessed: number;
+  totalBytes: number;
+  error?: string;
+};
+
+export type TrashBinEntryCollection = PagedCollection<{ entries: TrashBinEntry[] }> & {
+  usedBytes: number;
+};
+
+export type BulkResult = {
+  repositoryId: string;
+  success: boolean;
+  error?: string;
+};
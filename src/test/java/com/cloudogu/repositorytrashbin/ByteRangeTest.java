@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+
+  @Test
+  void shouldParseClosedRange() {
+    ByteRange range = ByteRange.parse("bytes=2-5", 10).orElseThrow();
+
+    assertThat(range.getOffset()).isEqualTo(2);
+    assertThat(range.getLength()).isEqualTo(4);
+    assertThat(range.toContentRange(10)).isEqualTo("bytes 2-5/10");
+  }
+
+  @Test
+  void shouldParseOpenRange() {
+    ByteRange range = ByteRange.parse("bytes=4-", 10).orElseThrow();
+
+    assertThat(range.getOffset()).isEqualTo(4);
+    assertThat(range.getLength()).isEqualTo(6);
+  }
+
+  @Test
+  void shouldParseSuffixRange() {
+    ByteRange range = ByteRange.parse("bytes=-3", 10).orElseThrow();
+
+    assertThat(range.getOffset()).isEqualTo(7);
+    assertThat(range.getLength()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldLimitRangeToContent() {
+    ByteRange range = ByteRange.parse("bytes=8-100", 10).orElseThrow();
+
+    assertThat(range.getLength()).isEqualTo(2);
+    assertThat(ByteRange.parse("bytes=-100", 10).orElseThrow().getOffset()).isZero();
+  }
+
+  @Test
+  void shouldReturnUnsatisfiableRangeBehindContent() {
+    assertThat(ByteRange.parse("bytes=10-", 10).orElseThrow().isSatisfiable()).isFalse();
+    assertThat(ByteRange.parse("bytes=-0", 10).orElseThrow().isSatisfiable()).isFalse();
+  }
+
+  @Test
+  void shouldIgnoreUnsupportedHeaders() {
+    assertThat(ByteRange.parse(null, 10)).isEmpty();
+    assertThat(ByteRange.parse("items=0-1", 10)).isEmpty();
+    assertThat(ByteRange.parse("bytes=0-1,4-5", 10)).isEmpty();
+    assertThat(ByteRange.parse("bytes=5-2", 10)).isEmpty();
+    assertThat(ByteRange.parse("bytes=a-b", 10)).isEmpty();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.store.InMemoryBlobStore;
+import sonia.scm.store.InMemoryBlobStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChunkStoreTest {
+
+  private final InMemoryBlobStore blobStore = new InMemoryBlobStore();
+  private final ChunkStore chunkStore = new ChunkStore(new InMemoryBlobStoreFactory(blobStore), new InMemoryDataStoreFactory());
+  private final byte[] content = randomBytes(3 * ChunkingOutputStream.MAX_CHUNK_SIZE);
+
+  @Test
+  void shouldRestoreWrittenSnapshot() throws IOException {
+    ChunkStore.ChunkedSnapshot snapshot = chunkStore.write(SnapshotCodec.GZIP, 1, output -> output.write(content));
+
+    AtomicLong progress = new AtomicLong();
+    try (InputStream input = chunkStore.open(snapshot.getChunks(), progress::addAndGet)) {
+      assertThat(input.readAllBytes()).isEqualTo(content);
+    }
+    assertThat(snapshot.getChunks()).hasSizeGreaterThan(1);
+    assertThat(progress.get()).isPositive();
+  }
+
+  @Test
+  void shouldStoreIdenticalChunksOnlyOnce() throws IOException {
+    ChunkStore.ChunkedSnapshot first = chunkStore.write(SnapshotCodec.NONE, 1, output -> output.write(content));
+    ChunkStore.ChunkedSnapshot second = chunkStore.write(SnapshotCodec.NONE, 1, output -> output.write(content));
+
+    assertThat(first.getStoredBytes()).isEqualTo(content.length);
+    assertThat(second.getStoredBytes()).isZero();
+    assertThat(second.getSize()).isEqualTo(content.length);
+    assertThat(chunkStore.getStoredBytes()).isEqualTo(content.length);
+  }
+
+  @Test
+  void shouldRemoveChunksWithoutReferences() throws IOException {
+    ChunkStore.ChunkedSnapshot first = chunkStore.write(SnapshotCodec.NONE, 1, output -> output.write(content));
+    ChunkStore.ChunkedSnapshot second = chunkStore.write(SnapshotCodec.NONE, 1, output -> output.write(content));
+
+    assertThat(chunkStore.release(first.getChunks())).isZero();
+    assertThat(chunkStore.release(second.getChunks())).isEqualTo(content.length);
+    assertThat(blobStore.getAll()).isEmpty();
+  }
+
+  @Test
+  void shouldReleaseChunksIfWriteFails() {
+    assertThrows(IOException.class, () -> chunkStore.write(SnapshotCodec.NONE, 1, output -> {
+      output.write(content);
+      throw new IOException("export failed");
+    }));
+
+    assertThat(blobStore.getAll()).isEmpty();
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] data = new byte[length];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkingOutputStreamTest {
+
+  @Test
+  void shouldSplitIntoChunksWithinLimits() throws IOException {
+    List<byte[]> chunks = chunk(randomBytes(256 * 1024));
+
+    assertThat(chunks).hasSizeGreaterThan(1);
+    assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length).isLessThanOrEqualTo(16 * 1024));
+    assertThat(chunks.subList(0, chunks.size() - 1)).allSatisfy(chunk -> assertThat(chunk.length).isGreaterThanOrEqualTo(1024));
+    assertThat(chunks.stream().mapToInt(chunk -> chunk.length).sum()).isEqualTo(256 * 1024);
+  }
+
+  @Test
+  void shouldKeepChunksAfterInsertedData() throws IOException {
+    byte[] original = randomBytes(256 * 1024);
+    byte[] modified = new byte[original.length + 10];
+    System.arraycopy(original, 0, modified, 0, 1000);
+    System.arraycopy(original, 1000, modified, 1010, original.length - 1000);
+
+    List<byte[]> originalChunks = chunk(original);
+    List<byte[]> modifiedChunks = chunk(modified);
+
+    long shared = modifiedChunks.stream()
+      .filter(chunk -> originalChunks.stream().anyMatch(other -> Arrays.equals(chunk, other)))
+      .count();
+    assertThat(shared).isGreaterThanOrEqualTo(originalChunks.size() - 2);
+  }
+
+  @Test
+  void shouldFindSameChunksIndependentOfWrittenBlocks() throws IOException {
+    byte[] data = randomBytes(256 * 1024);
+
+    List<byte[]> singleBytes = new ArrayList<>();
+    try (ChunkingOutputStream output = createStream(singleBytes)) {
+      for (byte b : data) {
+        output.write(b);
+      }
+    }
+    List<byte[]> blocks = new ArrayList<>();
+    try (ChunkingOutputStream output = createStream(blocks)) {
+      for (int offset = 0; offset < data.length; offset += 1000) {
+        output.write(data, offset, Math.min(1000, data.length - offset));
+      }
+    }
+
+    assertThat(blocks).usingElementComparator(Arrays::compare).containsExactlyElementsOf(singleBytes);
+    assertThat(chunk(data)).usingElementComparator(Arrays::compare).containsExactlyElementsOf(singleBytes);
+  }
+
+  @Test
+  void shouldNotEmitEmptyChunk() throws IOException {
+    assertThat(chunk(new byte[0])).isEmpty();
+  }
+
+  private List<byte[]> chunk(byte[] data) throws IOException {
+    List<byte[]> chunks = new ArrayList<>();
+    try (ChunkingOutputStream output = createStream(chunks)) {
+      output.write(data);
+    }
+    return chunks;
+  }
+
+  private ChunkingOutputStream createStream(List<byte[]> chunks) {
+    return new ChunkingOutputStream((buffer, length) -> chunks.add(Arrays.copyOf(buffer, length)), 1024, 16 * 1024, 12);
+  }
+
+  private byte[] randomBytes(int length) {
+    byte[] data = new byte[length];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+}
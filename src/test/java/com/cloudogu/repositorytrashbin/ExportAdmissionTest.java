@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportAdmissionTest {
+
+  private final ExportAdmission admission = new ExportAdmission();
+
+  @Test
+  void shouldAdmitUpToMaximum() throws InterruptedException {
+    assertThat(admission.acquire(2, 0, false)).isTrue();
+    assertThat(admission.acquire(2, 0, false)).isTrue();
+    assertThat(admission.acquire(2, 0, false)).isFalse();
+    assertThat(admission.getRunning()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldAdmitAgainAfterRelease() throws InterruptedException {
+    admission.acquire(1, 0, false);
+    admission.release();
+
+    assertThat(admission.acquire(1, 0, false)).isTrue();
+  }
+
+  @Test
+  void shouldWaitForFreeSlot() throws Exception {
+    admission.acquire(1, 1, false);
+
+    CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return admission.acquire(1, 1, false);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    awaitWaitingExport();
+    assertThat(admission.acquire(1, 1, false)).isFalse();
+
+    admission.release();
+
+    assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(admission.getWaiting()).isZero();
+  }
+
+  private void awaitWaitingExport() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (admission.getWaiting() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -16,16 +16,36 @@
 
 package com.cloudogu.repositorytrashbin;
 
+import com.cloudogu.repositorytrashbin.config.RepositoryTrashBinConfigAdapter;
+import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.schedule.Cancelable;
 import sonia.scm.schedule.Scheduler;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class RepositoryBinCleanupJobTest {
@@ -34,15 +54,201 @@ class RepositoryBinCleanupJobTest {
   private Scheduler scheduler;
   @Mock
   private RepositoryBinManager binManager;
+  @Mock
+  private RepositoryTrashBinConfigAdapter configAdapter;
+  @Mock
+  private ScheduledExecutorService executor;
+  @Mock
+  private Cancelable cancelable;
 
   @InjectMocks
   private RepositoryBinCleanupJob cleanupJob;
 
+  private final TrashBinConfig config = new TrashBinConfig();
+
+  @BeforeEach
+  void initConfig() {
+    lenient().when(configAdapter.getConfiguration()).thenReturn(config);
+  }
+
   @Test
   void shouldScheduleJob() {
     cleanupJob.run();
 
     verify(scheduler).schedule(eq("0 0 2 * * ?"), any(Runnable.class));
+  }
+
+  @Test
+  void shouldNotReadTrashBinDuringStartup() {
+    cleanupJob.run();
+
+    verify(binManager, never()).reconcile();
+    verify(binManager, never()).resumePendingSnapshots();
+    verify(binManager, never()).deleteAllExpired();
+  }
+
+  @Test
+  void shouldReconcileBeforeDeferredPurge() {
+    cleanupJob.run();
+    ArgumentCaptor<Runnable> startup = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).schedule(startup.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    startup.getValue().run();
+
+    InOrder inOrder = inOrder(binManager);
+    inOrder.verify(binManager).reconcile();
+    inOrder.verify(binManager).resumePendingSnapshots();
+    inOrder.verify(binManager).deleteAllExpired();
+  }
+
+  @Test
+  void shouldPurgeEvenIfReconciliationFails() {
+    doThrow(new IllegalStateException("broken journal")).when(binManager).reconcile();
+
+    cleanupJob.startup();
+
     verify(binManager).deleteAllExpired();
   }
+
+  @Test
+  void shouldDeferPurgeAtStartup() {
+    cleanupJob.run();
+
+    verify(binManager, never()).deleteAllExpired();
+    verify(executor).schedule(
+      any(Runnable.class),
+      longThat(delay -> delay >= TimeUnit.MINUTES.toMillis(5) && delay < TimeUnit.MINUTES.toMillis(6)),
+      eq(TimeUnit.MILLISECONDS)
+    );
+  }
+
+  @Test
+  void shouldDeferPurgeAtStartupWithoutJitter() {
+    config.setStartupPurgeDelaySeconds(10);
+    config.setStartupPurgeJitterSeconds(0);
+
+    cleanupJob.run();
+
+    verify(executor).schedule(any(Runnable.class), eq(10000L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldUseConfiguredCronExpression() {
+    config.setCleanupCron("0 30 3 * * ?");
+
+    cleanupJob.run();
+
+    verify(scheduler).schedule(eq("0 30 3 * * ?"), any(Runnable.class));
+  }
+
+  @Test
+  void shouldRescheduleAfterCronExpressionHasChanged() {
+    when(scheduler.schedule(eq("0 0 2 * * ?"), any(Runnable.class))).thenReturn(cancelable);
+    cleanupJob.run();
+
+    config.setCleanupCron("0 30 3 * * ?");
+    cleanupJob.purgeExpired();
+    cleanupJob.purgeExpired();
+
+    verify(cancelable).cancel();
+    verify(scheduler, times(1)).schedule(eq("0 30 3 * * ?"), any(Runnable.class));
+  }
+
+  @Test
+  void shouldRescheduleAfterConfigurationHasBeenStored() {
+    cleanupJob.run();
+    ArgumentCaptor<Runnable> configurationCheck = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor).scheduleWithFixedDelay(configurationCheck.capture(), eq(60000L), eq(60000L), eq(TimeUnit.MILLISECONDS));
+
+    config.setCleanupCron("0 30 3 * * ?");
+    configurationCheck.getValue().run();
+
+    verify(scheduler).schedule(eq("0 30 3 * * ?"), any(Runnable.class));
+    verify(binManager, never()).deleteAllExpired();
+  }
+
+  @Test
+  void shouldUseDefaultForInvalidCronExpression() {
+    config.setCleanupCron("0 0 2 * * *");
+
+    cleanupJob.run();
+
+    verify(scheduler).schedule(eq(TrashBinConfig.DEFAULT_CLEANUP_CRON), any(Runnable.class));
+    verify(scheduler, never()).schedule(eq("0 0 2 * * *"), any(Runnable.class));
+  }
+
+  @Test
+  void shouldUseDefaultIfCronExpressionCannotBeScheduled() {
+    config.setCleanupCron("0 30 3 * * ?");
+    when(scheduler.schedule(eq("0 30 3 * * ?"), any(Runnable.class))).thenThrow(new IllegalArgumentException("invalid"));
+
+    cleanupJob.run();
+
+    verify(scheduler).schedule(eq(TrashBinConfig.DEFAULT_CLEANUP_CRON), any(Runnable.class));
+    verify(executor).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldSchedulePurgeAtNextExpiration() {
+    when(binManager.getNextExpiration()).thenReturn(Optional.of(Instant.now().plus(1, ChronoUnit.HOURS)));
+
+    cleanupJob.purgeExpired();
+
+    verify(executor).schedule(
+      any(Runnable.class),
+      longThat(delay -> delay > TimeUnit.MINUTES.toMillis(59) && delay <= TimeUnit.HOURS.toMillis(1)),
+      eq(TimeUnit.MILLISECONDS)
+    );
+  }
+
+  @Test
+  void shouldBackOffIfExpiredEntryCouldNotBePurged() {
+    when(binManager.getNextExpiration()).thenReturn(Optional.of(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+    cleanupJob.purgeExpired();
+    cleanupJob.purgeExpired();
+
+    InOrder inOrder = inOrder(executor);
+    inOrder.verify(executor).schedule(any(Runnable.class), eq(TimeUnit.MINUTES.toMillis(1)), eq(TimeUnit.MILLISECONDS));
+    inOrder.verify(executor).schedule(any(Runnable.class), eq(TimeUnit.MINUTES.toMillis(2)), eq(TimeUnit.MILLISECONDS));
+    verify(binManager, times(2)).deleteAllExpired();
+  }
+
+  @Test
+  void shouldLimitDelayOfRetries() {
+    when(binManager.getNextExpiration()).thenReturn(Optional.of(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+    for (int i = 0; i < 20; i++) {
+      cleanupJob.purgeExpired();
+    }
+
+    verify(executor, times(20)).schedule(
+      any(Runnable.class),
+      longThat(delay -> delay >= TimeUnit.MINUTES.toMillis(1) && delay <= TimeUnit.HOURS.toMillis(1)),
+      eq(TimeUnit.MILLISECONDS)
+    );
+  }
+
+  @Test
+  void shouldResetBackOffAfterSuccessfulPurge() {
+    when(binManager.getNextExpiration())
+      .thenReturn(Optional.of(Instant.now().minus(1, ChronoUnit.HOURS)))
+      .thenReturn(Optional.of(Instant.now().plus(1, ChronoUnit.HOURS)))
+      .thenReturn(Optional.of(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+    cleanupJob.purgeExpired();
+    cleanupJob.purgeExpired();
+    cleanupJob.purgeExpired();
+
+    verify(executor, times(2)).schedule(any(Runnable.class), eq(TimeUnit.MINUTES.toMillis(1)), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldNotSchedulePurgeForEmptyTrashBin() {
+    when(binManager.getNextExpiration()).thenReturn(Optional.empty());
+
+    cleanupJob.purgeExpired();
+
+    verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+  }
 }
@@ -18,6 +18,8 @@ package com.cloudogu.repositorytrashbin;
 
 import com.cloudogu.repositorytrashbin.config.RepositoryTrashBinConfigAdapter;
 import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.authz.AuthorizationException;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
@@ -25,30 +27,57 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.ConcurrentModificationException;
+import sonia.scm.NotFoundException;
 import sonia.scm.repository.FullRepositoryExporter;
 import sonia.scm.repository.FullRepositoryImporter;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
 import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.Blob;
 import sonia.scm.store.BlobStore;
 import sonia.scm.store.BlobStoreFactory;
-import sonia.scm.store.ConfigurationEntryStore;
-import sonia.scm.store.ConfigurationEntryStoreFactory;
+import sonia.scm.store.DataStore;
 import sonia.scm.store.InMemoryBlobStore;
 import sonia.scm.store.InMemoryBlobStoreFactory;
-import sonia.scm.store.InMemoryConfigurationEntryStoreFactory;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.function.Consumer;
 
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.ENTRY_STORE_NAME;
 import static com.cloudogu.repositorytrashbin.RepositoryBinManager.MANAGE_TRASH_BIN;
-import static com.cloudogu.repositorytrashbin.RepositoryBinManager.STORE_NAME;
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.REPOSITORY_STORE_NAME;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -56,7 +85,16 @@ import static org.mockito.Mockito.when;
 @SubjectAware(value = "trillian")
 class RepositoryBinManagerTest {
 
-  private ConfigurationEntryStoreFactory storeFactory;
+  private final InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+  private final InMemoryConfigurationStoreFactory configurationStoreFactory = new InMemoryConfigurationStoreFactory();
+  private final TrashBinExpiryIndex expiryIndex = new TrashBinExpiryIndex(dataStoreFactory);
+  private final TrashBinCleanupEngine cleanupEngine = new TrashBinCleanupEngine(dataStoreFactory, () -> 0, Duration.ZERO);
+  private final TrashBinUsage usage = new TrashBinUsage(configurationStoreFactory);
+  private final RestoreTasks restoreTasks = new RestoreTasks(Runnable::run, () -> "task-1");
+  private final InMemoryBlobStore chunkBlobStore = new InMemoryBlobStore();
+  private final ChunkStore chunkStore = new ChunkStore(new InMemoryBlobStoreFactory(chunkBlobStore), dataStoreFactory);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final TrashBinMetrics metrics = new TrashBinMetrics(meterRegistry, expiryIndex, usage);
   private final BlobStore blobStore = new InMemoryBlobStore();
   private BlobStoreFactory blobStoreFactory;
   @Mock
@@ -65,6 +103,26 @@ class RepositoryBinManagerTest {
   private FullRepositoryExporter exporter;
   @Mock
   private RepositoryTrashBinConfigAdapter configAdapter;
+  @Mock
+  private RepositoryManager repositoryManager;
+  @Mock
+  private SnapshotStaging staging;
+  @Mock
+  private SnapshotExecutor snapshotExecutor;
+  @Mock
+  private TrashBinDiskSpace diskSpace;
+
+  private final TrashBinConfig config = new TrashBinConfig();
+
+  @BeforeEach
+  void initConfig() {
+    lenient().when(configAdapter.getConfiguration()).thenReturn(config);
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, Runnable.class).run();
+      return null;
+    }).when(snapshotExecutor).execute(any());
+    lenient().when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(Long.MAX_VALUE));
+  }
 
   @Test
   void shouldThrowAuthorizationExceptionOnGetAll() {
@@ -80,6 +138,19 @@ class RepositoryBinManagerTest {
     assertThrows(AuthorizationException.class, () -> createBinManager().restore(RepositoryTestData.create42Puzzle().getId()));
   }
 
+  @Test
+  void shouldThrowAuthorizationExceptionBeforeIterating() {
+    RepositoryBinManager binManager = createBinManager();
+    TrashBinQuery query = new TrashBinQuery(0, 10, TrashBinSortField.NAME, false, null, null, null);
+
+    assertThrows(AuthorizationException.class, () -> binManager.iterate(query));
+  }
+
+  @Test
+  void shouldThrowAuthorizationExceptionOnDownload() {
+    assertThrows(AuthorizationException.class, () -> createBinManager().getSnapshot(RepositoryTestData.create42Puzzle().getId()));
+  }
+
   @Test
   void shouldThrowAuthorizationExceptionOnDelete() {
     assertThrows(AuthorizationException.class, () -> createBinManager().delete(RepositoryTestData.create42Puzzle().getId()));
@@ -89,14 +160,17 @@ class RepositoryBinManagerTest {
   @SubjectAware(permissions = "repository:delete:id-1")
   void shouldMoveRepoToTrash() {
     blobStoreFactory = new InMemoryBlobStoreFactory(blobStore);
-    storeFactory = new InMemoryConfigurationEntryStoreFactory();
     Repository puzzle = RepositoryTestData.create42Puzzle();
     puzzle.setId("id-1");
 
     createBinManager().addToTrashBin(puzzle);
 
     verify(exporter).export(eq(puzzle), any(), eq(""));
-    assertThat(storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build().get(puzzle.getId())).isNotNull();
+    assertThat(meterRegistry.get("scm.trashbin.snapshot.duration").timer().count()).isEqualTo(1);
+    TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+    assertThat(entry.getNamespace()).isEqualTo(puzzle.getNamespace());
+    assertThat(entry.getName()).isEqualTo(puzzle.getName());
+    assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().get(puzzle.getId())).isEqualTo(puzzle);
     assertThat(blobStore.get(puzzle.getId())).isNotNull();
   }
 
@@ -109,7 +183,6 @@ class RepositoryBinManagerTest {
     @BeforeEach
     void init() {
       blobStoreFactory = new InMemoryBlobStoreFactory(blobStore);
-      storeFactory = new InMemoryConfigurationEntryStoreFactory();
       puzzle.setId("id-1");
       binManager = createBinManager();
     }
@@ -125,7 +198,33 @@ class RepositoryBinManagerTest {
 
       Collection<TrashBinEntry> entries = binManager.getAll();
       assertThat(entries).hasSize(2);
-      assertThat(entries.stream().map(TrashBinEntry::getRepository)).contains(puzzle, verticalPeopleTransporter);
+      assertThat(entries.stream().map(TrashBinEntry::getRepositoryId)).contains("id-1", "id-2");
+    }
+
+    @Test
+    void shouldGetPageOfTrashedRepos() {
+      binManager.addToTrashBin(puzzle);
+
+      TrashBinPage page = binManager.getPage(new TrashBinQuery(0, 10, TrashBinSortField.DELETED_AT, true, null, null, null));
+
+      assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId).containsExactly("id-1");
+
+      binManager.delete(puzzle.getId());
+
+      assertThat(binManager.getPage(new TrashBinQuery(0, 10, TrashBinSortField.DELETED_AT, true, null, null, null)).getEntries()).isEmpty();
+    }
+
+    @Test
+    void shouldChangeVersionWithEveryModification() {
+      String initial = binManager.getVersion();
+
+      binManager.addToTrashBin(puzzle);
+      String added = binManager.getVersion();
+      binManager.delete(puzzle.getId());
+
+      assertThat(added).isNotEqualTo(initial);
+      assertThat(binManager.getVersion()).isNotEqualTo(added).isNotEqualTo(initial);
+      assertThat(binManager.getVersion()).isEqualTo(binManager.getVersion());
     }
 
     @Test
@@ -135,24 +234,520 @@ class RepositoryBinManagerTest {
       binManager.restore(puzzle.getId());
 
       verify(importer).importFromStream(eq(puzzle), any(), eq(""));
-      assertThat(storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().get(puzzle.getId())).isNull();
       assertThat(blobStore.get(puzzle.getId())).isNull();
     }
 
+    @Test
+    void shouldRestoreTrashedRepositoryInBackground() throws IOException {
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      doAnswer(invocation -> invocation.getArgument(1, InputStream.class).readAllBytes())
+        .when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      RestoreTask task = binManager.startRestore(puzzle.getId());
+
+      assertThat(task.getState()).isEqualTo(RestoreTask.State.DONE);
+      assertThat(task.getTotalBytes()).isEqualTo(1024);
+      assertThat(task.getBytesProcessed()).isEqualTo(1024);
+      assertThat(binManager.getRestoreTask(task.getId())).isSameAs(task);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+    }
+
+    @Test
+    void shouldRejectDeletionWhileRestoreIsRunning() {
+      binManager.addToTrashBin(puzzle);
+      List<Exception> conflicts = new ArrayList<>();
+      doAnswer(invocation -> {
+        conflicts.add(assertThrows(ConcurrentModificationException.class, () -> binManager.delete(puzzle.getId())));
+        return null;
+      }).when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      binManager.restore(puzzle.getId());
+
+      assertThat(conflicts).hasSize(1);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+    }
+
+    @Test
+    void shouldFailToStartRestoreOfUnknownEntry() {
+      assertThrows(NotFoundException.class, () -> binManager.startRestore("unknown"));
+    }
+
+    @Test
+    void shouldStoreExportWithoutCompression() throws IOException {
+      config.setCompression(TrashBinConfig.COMPRESSION_GZIP);
+      doAnswer(invocation -> {
+        invocation.getArgument(1, OutputStream.class).write("snapshot".getBytes(StandardCharsets.UTF_8));
+        return null;
+      }).when(exporter).export(any(), any(), any());
+      binManager.addToTrashBin(puzzle);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId()).getCodec())
+        .isEqualTo(SnapshotCodec.NONE);
+      assertThat(blobStore.get(puzzle.getId()).getSize()).isEqualTo(8);
+
+      StringBuilder restored = new StringBuilder();
+      doAnswer(invocation -> {
+        restored.append(new String(invocation.getArgument(1, InputStream.class).readAllBytes(), StandardCharsets.UTF_8));
+        return null;
+      }).when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      binManager.restore(puzzle.getId());
+
+      assertThat(restored).hasToString("snapshot");
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldStageRepositoriesDeletedInBurstAndWriteSnapshotsTogether(@TempDir Path stagedSnapshot) throws IOException {
+      config.setBurstThreshold(2);
+      Files.write(stagedSnapshot.resolve("HEAD"), "ref: refs/heads/main".getBytes());
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+      when(staging.find("id-2")).thenReturn(Optional.of(stagedSnapshot));
+
+      binManager.addToTrashBin(puzzle);
+      binManager.addToTrashBin(verticalPeopleTransporter);
+
+      verify(exporter).export(eq(puzzle), any(), eq(""));
+      verify(exporter, never()).export(eq(verticalPeopleTransporter), any(), any());
+      verify(staging).stage(verticalPeopleTransporter);
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.get("id-2").getStatus()).isEqualTo(SnapshotStatus.PENDING);
+
+      binManager.flushBatch();
+
+      assertThat(store.get("id-2").getStatus()).isEqualTo(SnapshotStatus.READY);
+      assertThat(store.get("id-2").getFormat()).isEqualTo(SnapshotFormat.ARCHIVE);
+      assertThat(blobStore.get("id-2").getSize()).isPositive();
+      assertThat(binManager.getUsedBytes()).isEqualTo(blobStore.get(puzzle.getId()).getSize() + blobStore.get("id-2").getSize());
+      verify(staging).remove("id-2");
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldExportIfRepositoryCannotBeStagedInBurst() throws IOException {
+      config.setBurstThreshold(2);
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+      doThrow(new IOException("not a directory")).when(staging).stage(verticalPeopleTransporter);
+
+      binManager.addToTrashBin(puzzle);
+      binManager.addToTrashBin(verticalPeopleTransporter);
+
+      verify(exporter).export(eq(verticalPeopleTransporter), any(), eq(""));
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.get("id-2").getStatus()).isEqualTo(SnapshotStatus.READY);
+      assertThat(store.get("id-2").getFormat()).isEqualTo(SnapshotFormat.EXPORT);
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldCheckFreeSpaceBeforeStagingInBurst() throws IOException {
+      config.setBurstThreshold(2);
+      config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_FAIL);
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+      binManager.addToTrashBin(puzzle);
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024L * 1024L - 1));
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(verticalPeopleTransporter));
+
+      verify(staging, never()).stage(verticalPeopleTransporter);
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldShareChunksOfForks(@TempDir Path original, @TempDir Path fork) throws IOException {
+      config.setStorageMode(TrashBinConfig.STORAGE_MODE_CHUNKED);
+      byte[] pack = new byte[8 * 1024 * 1024];
+      new Random(42).nextBytes(pack);
+      Files.write(original.resolve("pack"), pack);
+      Files.write(original.resolve("HEAD"), "ref: refs/heads/main".getBytes());
+      Files.write(fork.resolve("pack"), pack);
+      Files.write(fork.resolve("HEAD"), "ref: refs/heads/fork".getBytes());
+      when(staging.find(puzzle.getId())).thenReturn(Optional.of(original));
+      when(staging.find("id-2")).thenReturn(Optional.of(fork));
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+
+      binManager.addToTrashBin(puzzle);
+      binManager.addToTrashBin(verticalPeopleTransporter);
+
+      verify(exporter, never()).export(any(), any(), any());
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.get("id-2").getFormat()).isEqualTo(SnapshotFormat.ARCHIVE);
+      assertThat(store.get("id-2").getSize()).isGreaterThan(pack.length);
+      long chunkBytes = chunkBlobStore.getAll().stream().mapToLong(Blob::getSize).sum();
+      assertThat(chunkBytes).isLessThan(pack.length * 3L / 2);
+
+      binManager.delete(puzzle.getId());
+      assertThat(chunkBlobStore.getAll()).isNotEmpty();
+
+      binManager.delete("id-2");
+      assertThat(chunkBlobStore.getAll()).isEmpty();
+      assertThat(binManager.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void shouldExportChunkedSnapshotIfDirectoryCannotBeStaged() throws IOException {
+      config.setStorageMode(TrashBinConfig.STORAGE_MODE_CHUNKED);
+      when(staging.stage(puzzle)).thenThrow(new IOException("no directory"));
+      exportContent("snapshot");
+
+      binManager.addToTrashBin(puzzle);
+
+      TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+      assertThat(entry.getFormat()).isEqualTo(SnapshotFormat.EXPORT);
+      assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.READY);
+      assertThat(chunkBlobStore.getAll()).isNotEmpty();
+    }
+
+    @Test
+    void shouldRemoveEntryIfChunkedArchiveFails(@TempDir Path stagedSnapshot) {
+      config.setStorageMode(TrashBinConfig.STORAGE_MODE_CHUNKED);
+      when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot.resolve("missing")));
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(puzzle));
+
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(chunkBlobStore.getAll()).isEmpty();
+      verify(staging).remove(puzzle.getId());
+    }
+
+    @Test
+    void shouldRestoreChunkedSnapshot(@TempDir Path stagedSnapshot, @TempDir Path restored) throws IOException {
+      config.setStorageMode(TrashBinConfig.STORAGE_MODE_CHUNKED);
+      config.setCompression(TrashBinConfig.COMPRESSION_GZIP);
+      Files.write(stagedSnapshot.resolve("HEAD"), "ref: refs/heads/main".getBytes());
+      when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+      binManager.addToTrashBin(puzzle);
+      when(staging.find(puzzle.getId())).thenReturn(Optional.empty());
+      when(repositoryManager.create(eq(puzzle), any())).thenAnswer(invocation -> {
+        invocation.<Consumer<Repository>>getArgument(1).accept(puzzle);
+        return puzzle;
+      });
+      doAnswer(invocation -> {
+        DirectoryArchive.extract(invocation.getArgument(1, InputStream.class), restored);
+        return null;
+      }).when(staging).restore(eq(puzzle), any(InputStream.class));
+
+      binManager.restore(puzzle.getId());
+
+      assertThat(restored.resolve("HEAD")).hasContent("ref: refs/heads/main");
+      verify(importer, never()).importFromStream(any(), any(), any());
+      assertThat(chunkBlobStore.getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldDownloadRangeOfSnapshot() throws IOException {
+      exportContent("snapshot");
+      binManager.addToTrashBin(puzzle);
+
+      SnapshotDownload download = binManager.getSnapshot(puzzle.getId());
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      download.write(4, 4, output);
+
+      assertThat(download.getLength()).isEqualTo(8);
+      assertThat(download.getChecksum()).isEqualTo(Hashing.sha256().hashString("snapshot", StandardCharsets.UTF_8).toString());
+      assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("shot");
+    }
+
+    @Test
+    void shouldDownloadUncompressedChunkedSnapshot(@TempDir Path stagedSnapshot) throws IOException {
+      config.setStorageMode(TrashBinConfig.STORAGE_MODE_CHUNKED);
+      config.setCompression(TrashBinConfig.COMPRESSION_GZIP);
+      Files.write(stagedSnapshot.resolve("HEAD"), "ref: refs/heads/main".getBytes());
+      when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+      binManager.addToTrashBin(puzzle);
+
+      SnapshotDownload download = binManager.getSnapshot(puzzle.getId());
+      ByteArrayOutputStream all = new ByteArrayOutputStream();
+      download.writeAll(all);
+      ByteArrayOutputStream range = new ByteArrayOutputStream();
+      download.write(4, 4, range);
+
+      assertThat(download.getLength()).isEqualTo(all.size());
+      assertThat(all.toString(StandardCharsets.UTF_8)).contains("ref: refs/heads/main");
+      assertThat(range.toByteArray()).isEqualTo(Arrays.copyOfRange(all.toByteArray(), 4, 8));
+    }
+
+    @Test
+    void shouldNotDownloadPendingSnapshot() {
+      dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build()
+        .put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now(), SnapshotStatus.PENDING, SnapshotFormat.ARCHIVE));
+      binManager.invalidateCache();
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.getSnapshot(puzzle.getId()));
+    }
+
+    @Test
+    void shouldFailToDownloadUnknownSnapshot() {
+      assertThrows(NotFoundException.class, () -> binManager.getSnapshot("unknown"));
+    }
+
+    private void exportContent(String content) throws IOException {
+      doAnswer(invocation -> {
+        invocation.getArgument(1, OutputStream.class).write(content.getBytes(StandardCharsets.UTF_8));
+        return null;
+      }).when(exporter).export(any(), any(), any());
+    }
+
     @Test
     void shouldDeleteTrashedRepository() {
       binManager.addToTrashBin(puzzle);
 
       binManager.delete(puzzle.getId());
 
-      assertThat(storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
       assertThat(blobStore.get(puzzle.getId())).isNull();
     }
 
+    @Nested
+    class WithKeptDirectories {
+
+      @TempDir
+      Path stagedSnapshot;
+
+      @BeforeEach
+      void enableKeptDirectories() {
+        config.setSnapshotMode(TrashBinConfig.SNAPSHOT_MODE_DIRECTORY);
+      }
+
+      @Test
+      void shouldKeepDirectoryWithoutExport() throws IOException {
+        when(staging.size(puzzle.getId())).thenReturn(42L);
+
+        binManager.addToTrashBin(puzzle);
+
+        verify(staging).stage(puzzle);
+        verify(exporter, never()).export(any(), any(), any());
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.READY);
+        assertThat(entry.getFormat()).isEqualTo(SnapshotFormat.DIRECTORY);
+        assertThat(entry.getSize()).isEqualTo(42);
+        assertThat(blobStore.get(puzzle.getId())).isNull();
+        assertThat(binManager.getUsedBytes()).isEqualTo(42);
+        verify(staging, never()).remove(puzzle.getId());
+      }
+
+      @Test
+      void shouldFallBackToExportIfDirectoryCannotBeKept() throws IOException {
+        when(staging.stage(puzzle)).thenThrow(new IOException("no directory"));
+
+        binManager.addToTrashBin(puzzle);
+
+        verify(exporter).export(eq(puzzle), any(), eq(""));
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getFormat()).isEqualTo(SnapshotFormat.EXPORT);
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.READY);
+      }
+
+      @Test
+      void shouldCheckFreeSpaceBeforeFallingBackToExport() throws IOException {
+        config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_FAIL);
+        when(staging.stage(puzzle)).thenThrow(new IOException("no directory"));
+        when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024));
+
+        assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(puzzle));
+
+        verify(exporter, never()).export(any(), any(), any());
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      }
+
+      @Test
+      void shouldRestoreByMovingDirectory() throws IOException {
+        when(staging.size(puzzle.getId())).thenReturn(42L);
+        binManager.addToTrashBin(puzzle);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+        when(repositoryManager.create(eq(puzzle), any())).thenAnswer(invocation -> {
+          invocation.<Consumer<Repository>>getArgument(1).accept(puzzle);
+          return puzzle;
+        });
+
+        binManager.restore(puzzle.getId());
+
+        verify(staging).restore(puzzle, stagedSnapshot);
+        verify(importer, never()).importFromStream(any(), any(), any());
+        verify(staging).remove(puzzle.getId());
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+        assertThat(binManager.getUsedBytes()).isZero();
+      }
+
+      @Test
+      void shouldFreeKeptDirectoryOnDelete() throws IOException {
+        when(staging.size(puzzle.getId())).thenReturn(42L);
+        binManager.addToTrashBin(puzzle);
+
+        binManager.delete(puzzle.getId());
+
+        verify(staging).remove(puzzle.getId());
+        assertThat(binManager.getUsedBytes()).isZero();
+      }
+    }
+
+    @Nested
+    class WithStagedSnapshots {
+
+      @TempDir
+      Path stagedSnapshot;
+
+      @BeforeEach
+      void enableStagedSnapshots() throws IOException {
+        config.setSnapshotMode(TrashBinConfig.SNAPSHOT_MODE_STAGED);
+        Files.write(stagedSnapshot.resolve("HEAD"), "ref: refs/heads/main".getBytes());
+      }
+
+      @Test
+      void shouldStageAndArchiveRepository() throws IOException {
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+
+        binManager.addToTrashBin(puzzle);
+
+        verify(staging).stage(puzzle);
+        verify(exporter, never()).export(any(), any(), any());
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.READY);
+        assertThat(entry.getFormat()).isEqualTo(SnapshotFormat.ARCHIVE);
+        assertThat(blobStore.get(puzzle.getId()).getSize()).isPositive();
+        verify(staging).remove(puzzle.getId());
+      }
+
+      @Test
+      void shouldKeepSnapshotPendingWithoutSpaceForArchive() throws IOException {
+        config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_FAIL);
+        when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024L * 1024L));
+        when(staging.size(puzzle.getId())).thenReturn(1L);
+
+        binManager.addToTrashBin(puzzle);
+
+        verify(staging).stage(puzzle);
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.PENDING);
+        assertThat(blobStore.get(puzzle.getId())).isNull();
+        verify(staging, never()).remove(puzzle.getId());
+      }
+
+      @Test
+      void shouldKeepStagedCopyIfArchivingFails() {
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot.resolve("missing")));
+
+        binManager.addToTrashBin(puzzle);
+
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.FAILED);
+        assertThat(blobStore.get(puzzle.getId())).isNull();
+        verify(staging, never()).remove(puzzle.getId());
+      }
+
+      @Test
+      void shouldNotRestorePendingSnapshot() {
+        dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build()
+          .put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now(), SnapshotStatus.PENDING, SnapshotFormat.ARCHIVE));
+
+        assertThrows(RepositoryTrashBinException.class, () -> binManager.restore(puzzle.getId()));
+      }
+
+      @Test
+      void shouldRestoreArchivedRepository() throws IOException {
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+        binManager.addToTrashBin(puzzle);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.empty());
+        when(repositoryManager.create(eq(puzzle), any())).thenAnswer(invocation -> {
+          invocation.<Consumer<Repository>>getArgument(1).accept(puzzle);
+          return puzzle;
+        });
+
+        binManager.restore(puzzle.getId());
+
+        verify(staging).restore(eq(puzzle), any(InputStream.class));
+        verify(importer, never()).importFromStream(any(), any(), any());
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+        assertThat(blobStore.get(puzzle.getId())).isNull();
+      }
+
+      @Test
+      void shouldFailCreationOfRepositoryFromDamagedArchive() throws IOException {
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+        binManager.addToTrashBin(puzzle);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.empty());
+        damageSnapshot(puzzle.getId());
+        List<Exception> failures = new ArrayList<>();
+        when(repositoryManager.create(eq(puzzle), any())).thenAnswer(invocation -> {
+          try {
+            invocation.<Consumer<Repository>>getArgument(1).accept(puzzle);
+          } catch (UncheckedIOException e) {
+            // the repository manager removes the created repository again
+            failures.add(e);
+            throw e;
+          }
+          return puzzle;
+        });
+
+        assertThrows(RepositoryTrashBinException.class, () -> binManager.restore(puzzle.getId()));
+
+        assertThat(failures).hasSize(1);
+        TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+        assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.CORRUPT);
+      }
+
+      @Test
+      void shouldStoreFilesOfArchiveUncompressed() throws IOException {
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+
+        binManager.addToTrashBin(puzzle);
+
+        try (InputStream archive = blobStore.get(puzzle.getId()).getInputStream()) {
+          assertThat(new String(archive.readAllBytes(), StandardCharsets.UTF_8)).contains("ref: refs/heads/main");
+        }
+      }
+
+      @Test
+      void shouldRestoreCompressedArchive(@TempDir Path restored) throws IOException {
+        config.setCompression(TrashBinConfig.COMPRESSION_GZIP);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+        binManager.addToTrashBin(puzzle);
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId()).getCodec())
+          .isEqualTo(SnapshotCodec.GZIP);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.empty());
+        when(repositoryManager.create(eq(puzzle), any())).thenAnswer(invocation -> {
+          invocation.<Consumer<Repository>>getArgument(1).accept(puzzle);
+          return puzzle;
+        });
+        doAnswer(invocation -> {
+          DirectoryArchive.extract(invocation.getArgument(1, InputStream.class), restored);
+          return null;
+        }).when(staging).restore(eq(puzzle), any(InputStream.class));
+
+        binManager.restore(puzzle.getId());
+
+        assertThat(restored.resolve("HEAD")).hasContent("ref: refs/heads/main");
+      }
+
+      @Test
+      void shouldNotKnowLengthOfCompressedSnapshotWithoutRecordedSize() throws IOException {
+        config.setCompression(TrashBinConfig.COMPRESSION_GZIP);
+        when(staging.find(puzzle.getId())).thenReturn(Optional.of(stagedSnapshot));
+        binManager.addToTrashBin(puzzle);
+        DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+        TrashBinEntry entry = store.get(puzzle.getId());
+        entry.setUncompressedSize(0);
+        store.put(puzzle.getId(), entry);
+        binManager.invalidateCache();
+
+        SnapshotDownload download = binManager.getSnapshot(puzzle.getId());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        download.writeAll(output);
+
+        assertThat(download.isLengthKnown()).isFalse();
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("ref: refs/heads/main");
+      }
+    }
+
     @Test
     void shouldDeleteAllTrashedExpiredRepositories() {
-      when(configAdapter.getConfiguration()).thenReturn(new TrashBinConfig());
-      ConfigurationEntryStore<TrashBinEntry> store = storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
 
       store.put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now()));
       blobStore.create(puzzle.getId());
@@ -165,17 +760,494 @@ class RepositoryBinManagerTest {
       store.put(verticalPeopleTransporter.getId(), new TrashBinEntry(verticalPeopleTransporter, "zaphod", Instant.now().minus(42, ChronoUnit.DAYS)));
       blobStore.create(verticalPeopleTransporter.getId());
 
-      binManager.deleteAllExpired();
+      CleanupStatistics statistics = binManager.deleteAllExpired();
 
+      assertThat(statistics.getEntriesPurged()).isEqualTo(2);
+      assertThat(meterRegistry.get("scm.trashbin.cleanup.purged").counter().count()).isEqualTo(2);
+      assertThat(statistics.getFailures()).isZero();
       assertThat(blobStore.getAll()).hasSize(1);
       assertThat(blobStore.get(puzzle.getId())).isNotNull();
       assertThat(store.getAll().values()).hasSize(1);
       assertThat(store.get(puzzle.getId())).isNotNull();
     }
 
+    @Test
+    void shouldReadEntriesChangedBehindTheManagerAfterInvalidation() {
+      binManager.addToTrashBin(puzzle);
+      assertThat(binManager.getAll()).hasSize(1);
+      dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().remove(puzzle.getId());
+
+      assertThat(binManager.getAll()).hasSize(1);
+
+      binManager.invalidateCache();
+
+      assertThat(binManager.getAll()).isEmpty();
+      assertThat(binManager.getPage(new TrashBinQuery(0, 10, TrashBinSortField.DELETED_AT, true, null, null, null)).getEntries()).isEmpty();
+    }
+
+    @Test
+    void shouldUseExpiryIndexForCleanup() {
+      binManager.addToTrashBin(puzzle);
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+      store.put(heartOfGold.getId(), new TrashBinEntry(heartOfGold, "zaphod", Instant.now().minus(31, ChronoUnit.DAYS)));
+      blobStore.create(heartOfGold.getId());
+
+      binManager.deleteAllExpired();
+
+      assertThat(store.get(puzzle.getId())).isNotNull();
+      assertThat(store.get(heartOfGold.getId())).isNotNull();
+      assertThat(blobStore.get(heartOfGold.getId())).isNotNull();
+    }
+
+    @Test
+    void shouldReturnNextExpiration() {
+      binManager.addToTrashBin(puzzle);
+      Instant deletedAt = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId()).getDeletedAt();
+
+      assertThat(binManager.getNextExpiration()).contains(deletedAt.plus(30, ChronoUnit.DAYS));
+
+      binManager.delete(puzzle.getId());
+
+      assertThat(binManager.getNextExpiration()).isEmpty();
+    }
+
+    @Test
+    void shouldRecordSizeOfSnapshot() throws IOException {
+      exportBytes(1024);
+
+      binManager.addToTrashBin(puzzle);
+
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId()).getSize()).isEqualTo(1024);
+      assertThat(binManager.getUsedBytes()).isEqualTo(1024);
+
+      binManager.delete(puzzle.getId());
+
+      assertThat(binManager.getUsedBytes()).isZero();
+    }
+
+    @Nested
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    class WithSaturatedExports {
+
+      private final Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      private final List<Exception> failures = new ArrayList<>();
+
+      @BeforeEach
+      void exportSecondRepositoryDuringFirstExport() throws IOException {
+        config.setMaxConcurrentExports(1);
+        config.setMaxQueuedExports(0);
+        verticalPeopleTransporter.setId("id-2");
+        doAnswer(invocation -> {
+          if (puzzle.equals(invocation.getArgument(0))) {
+            try {
+              binManager.addToTrashBin(verticalPeopleTransporter);
+            } catch (RepositoryTrashBinException e) {
+              failures.add(e);
+            }
+          }
+          return null;
+        }).when(exporter).export(any(), any(), any());
+      }
+
+      @Test
+      void shouldRejectExportIfSaturated() {
+        config.setExportSaturationPolicy(TrashBinConfig.SATURATION_POLICY_FAIL);
+
+        binManager.addToTrashBin(puzzle);
+
+        assertThat(failures).hasSize(1);
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get("id-2")).isNull();
+        assertThat(meterRegistry.get("scm.trashbin.export.rejected").tag("policy", "fail").counter().count()).isEqualTo(1);
+      }
+
+      @Test
+      void shouldStageRepositoryIfSaturated() throws IOException {
+        config.setExportSaturationPolicy(TrashBinConfig.SATURATION_POLICY_DEFER);
+
+        binManager.addToTrashBin(puzzle);
+
+        assertThat(failures).isEmpty();
+        verify(staging).stage(verticalPeopleTransporter);
+        verify(exporter, never()).export(eq(verticalPeopleTransporter), any(), any());
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get("id-2")).isNotNull();
+      }
+
+      @Test
+      void shouldRejectExportInsteadOfKeptDirectoryIfSaturated() throws IOException {
+        config.setSnapshotMode(TrashBinConfig.SNAPSHOT_MODE_DIRECTORY);
+        config.setExportSaturationPolicy(TrashBinConfig.SATURATION_POLICY_DEFER);
+        when(staging.stage(any())).thenThrow(new IOException("no directory"));
+
+        binManager.addToTrashBin(puzzle);
+
+        assertThat(failures).hasSize(1);
+        verify(exporter, never()).export(eq(verticalPeopleTransporter), any(), any());
+        assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get("id-2")).isNull();
+        assertThat(meterRegistry.get("scm.trashbin.export.rejected").tag("policy", "defer").counter().count()).isEqualTo(1);
+      }
+
+      @Test
+      void shouldExportAgainAfterSlotHasBeenReleased() {
+        config.setExportSaturationPolicy(TrashBinConfig.SATURATION_POLICY_FAIL);
+        binManager.addToTrashBin(puzzle);
+
+        binManager.addToTrashBin(verticalPeopleTransporter);
+
+        verify(exporter).export(eq(verticalPeopleTransporter), any(), eq(""));
+        assertThat(meterRegistry.get("scm.trashbin.export.wait").timer().count()).isEqualTo(2);
+      }
+    }
+
+    @Test
+    void shouldStoreChecksumOfSnapshot() throws IOException {
+      exportBytes(1024);
+
+      binManager.addToTrashBin(puzzle);
+
+      TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+      assertThat(entry.getChecksum()).isEqualTo(Hashing.sha256().hashBytes(new byte[1024]).toString());
+      assertThat(entry.getVerifiedAt()).isNotNull();
+    }
+
+    @Test
+    void shouldMarkDamagedSnapshotAsCorruptOnRestore() throws IOException {
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      damageSnapshot(puzzle.getId());
+      doAnswer(invocation -> invocation.getArgument(1, InputStream.class).readAllBytes())
+        .when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.restore(puzzle.getId()));
+
+      TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+      assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.CORRUPT);
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.restore(puzzle.getId()));
+      verify(importer).importFromStream(eq(puzzle), any(), eq(""));
+    }
+
+    @Test
+    void shouldImportVerifiedSnapshot() throws IOException {
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      List<Integer> imported = new ArrayList<>();
+      doAnswer(invocation -> imported.add(invocation.getArgument(1, InputStream.class).readAllBytes().length))
+        .when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      binManager.restore(puzzle.getId());
+
+      assertThat(imported).containsExactly(1024);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+    }
+
+    @Test
+    void shouldMarkDamagedSnapshotAsCorruptOnScrub() throws IOException {
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      damageSnapshot(puzzle.getId());
+
+      assertThat(binManager.scrub()).isEqualTo(1);
+
+      TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+      assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.CORRUPT);
+    }
+
+    @Test
+    void shouldUpdateVerificationTimeOnScrub() throws IOException {
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      Instant verifiedAt = store.get(puzzle.getId()).getVerifiedAt();
+
+      assertThat(binManager.scrub()).isZero();
+
+      assertThat(store.get(puzzle.getId()).getStatus()).isEqualTo(SnapshotStatus.READY);
+      assertThat(store.get(puzzle.getId()).getVerifiedAt()).isAfterOrEqualTo(verifiedAt);
+    }
+
+    @Test
+    void shouldNotScrubIfDisabled() throws IOException {
+      config.setScrubMegabytesPerRun(0);
+      exportBytes(1024);
+      binManager.addToTrashBin(puzzle);
+      damageSnapshot(puzzle.getId());
+
+      assertThat(binManager.scrub()).isZero();
+    }
+
+    private void damageSnapshot(String repositoryId) throws IOException {
+      blobStore.remove(repositoryId);
+      try (OutputStream output = blobStore.create(repositoryId).getOutputStream()) {
+        byte[] damaged = new byte[1024];
+        damaged[512] = 1;
+        output.write(damaged);
+      }
+    }
+
+    @Test
+    void shouldInitializeUsageFromExistingBlobs() throws IOException {
+      try (OutputStream output = blobStore.create("legacy").getOutputStream()) {
+        output.write(new byte[42]);
+      }
+
+      assertThat(binManager.getUsedBytes()).isEqualTo(42);
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldEvictOldestEntriesIfHighWatermarkIsExceeded() throws IOException {
+      config.setQuotaMegabytes(1);
+      exportBytes(600 * 1024);
+      binManager.addToTrashBin(puzzle);
+
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+      binManager.addToTrashBin(verticalPeopleTransporter);
+
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.get(puzzle.getId())).isNull();
+      assertThat(store.get("id-2")).isNotNull();
+      assertThat(binManager.getUsedBytes()).isEqualTo(600 * 1024);
+    }
+
+    @Test
+    void shouldNotEvictEntriesWithoutQuota() throws IOException {
+      exportBytes(2 * 1024 * 1024);
+
+      binManager.addToTrashBin(puzzle);
+
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNotNull();
+    }
+
+    @Test
+    void shouldExportWithWarningWithoutEnoughFreeSpaceByDefault() throws IOException {
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024L * 1024L));
+      when(diskSpace.estimateSize(puzzle)).thenReturn(1L);
+
+      binManager.addToTrashBin(puzzle);
+
+      verify(exporter).export(eq(puzzle), any(), eq(""));
+    }
+
+    @Test
+    void shouldRejectDeletionWithoutEnoughFreeSpace() throws IOException {
+      config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_FAIL);
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024L * 1024L));
+      when(diskSpace.estimateSize(puzzle)).thenReturn(1L);
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(puzzle));
+
+      verify(exporter, never()).export(any(), any(), any());
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+    }
+
+    @Test
+    void shouldExportWithoutCheckIfFreeSpaceIsUnknown() throws IOException {
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.empty());
+
+      binManager.addToTrashBin(puzzle);
+
+      verify(exporter).export(eq(puzzle), any(), eq(""));
+    }
+
+    @Test
+    @SubjectAware(permissions = {"repository:delete:id-2"})
+    void shouldEvictOldestEntriesWithoutEnoughFreeSpace() throws IOException {
+      config.setFreeSpaceReserveMegabytes(1);
+      config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_EVICT);
+      exportBytes(600 * 1024);
+      binManager.addToTrashBin(puzzle);
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      verticalPeopleTransporter.setId("id-2");
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(1024L * 1024L));
+      when(diskSpace.estimateSize(verticalPeopleTransporter)).thenReturn(500L * 1024L);
+
+      binManager.addToTrashBin(verticalPeopleTransporter);
+
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.get(puzzle.getId())).isNull();
+      assertThat(store.get("id-2")).isNotNull();
+      assertThat(meterRegistry.get("scm.trashbin.cleanup.purged").tag("reason", "space").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectDeletionIfEvictionFreesTooLittle() throws IOException {
+      config.setLowSpacePolicy(TrashBinConfig.LOW_SPACE_POLICY_EVICT);
+      when(diskSpace.getUsableSpace()).thenReturn(OptionalLong.of(0L));
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(puzzle));
+
+      verify(exporter, never()).export(any(), any(), any());
+    }
+
+    private void exportBytes(int size) throws IOException {
+      doAnswer(invocation -> {
+        invocation.getArgument(1, OutputStream.class).write(new byte[size]);
+        return null;
+      }).when(exporter).export(any(), any(), any());
+    }
+
+    @Test
+    void shouldRemoveEntryIfExportFails() throws IOException {
+      doAnswer(invocation -> {
+        throw new IOException("disk on fire");
+      }).when(exporter).export(any(), any(), any());
+
+      assertThrows(RepositoryTrashBinException.class, () -> binManager.addToTrashBin(puzzle));
+
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(blobStore.get(puzzle.getId())).isNull();
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldNotKeepIntentsOfFinishedOperations() {
+      binManager.addToTrashBin(puzzle);
+      binManager.restore(puzzle.getId());
+
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldRollBackInterruptedExport() {
+      storeInterruptedEntry(TrashBinJournal.Operation.ADD);
+      when(repositoryManager.get(puzzle.getNamespaceAndName())).thenReturn(puzzle);
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.getRolledBack()).isEqualTo(1);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(blobStore.get(puzzle.getId())).isNull();
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldQuarantineIncompleteSnapshotOfDeletedRepository() {
+      storeInterruptedEntry(TrashBinJournal.Operation.ADD);
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.getQuarantined()).isEqualTo(1);
+      TrashBinEntry entry = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId());
+      assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.FAILED);
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldCompleteInterruptedRemoval() {
+      storeInterruptedEntry(TrashBinJournal.Operation.REMOVE);
+      blobStore.remove(puzzle.getId());
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.getCompleted()).isEqualTo(1);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(binManager.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void shouldKeepSizeOfKeptDirectoriesInUsageAfterReconciliation() {
+      Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+      TrashBinEntry keptDirectory = new TrashBinEntry(heartOfGold, "zaphod", Instant.now());
+      keptDirectory.setFormat(SnapshotFormat.DIRECTORY);
+      keptDirectory.setSize(42);
+      dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().put(heartOfGold.getId(), keptDirectory);
+      storeInterruptedEntry(TrashBinJournal.Operation.REMOVE);
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.getCompleted()).isEqualTo(1);
+      assertThat(binManager.getUsedBytes()).isEqualTo(42);
+    }
+
+    @Test
+    void shouldKeepEntryOfRestoreInterruptedBeforeImport() {
+      storeInterruptedEntry(TrashBinJournal.Operation.RESTORE);
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.hasChanges()).isFalse();
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNotNull();
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    @Test
+    void shouldCompleteRestoreInterruptedAfterImport() {
+      storeInterruptedEntry(TrashBinJournal.Operation.RESTORE);
+      Repository restored = puzzle.clone();
+      restored.setId("restored-id");
+      when(repositoryManager.get(puzzle.getNamespaceAndName())).thenReturn(restored);
+
+      ReconciliationReport report = binManager.reconcile();
+
+      assertThat(report.getCompleted()).isEqualTo(1);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().get(puzzle.getId())).isNull();
+      assertThat(blobStore.get(puzzle.getId())).isNull();
+      assertThat(createJournalStore().getAll()).isEmpty();
+    }
+
+    private void storeInterruptedEntry(TrashBinJournal.Operation operation) {
+      dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build()
+        .put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now()));
+      dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().put(puzzle.getId(), puzzle);
+      blobStore.create(puzzle.getId());
+      createJournalStore().put(puzzle.getId(), new TrashBinJournal.Intent(operation, Instant.now()));
+    }
+
+    private DataStore<TrashBinJournal.Intent> createJournalStore() {
+      return dataStoreFactory.withType(TrashBinJournal.Intent.class).withName(TrashBinJournal.STORE_NAME).build();
+    }
+
+    @Test
+    void shouldSelectEntriesByFilter() {
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      store.put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now()));
+      Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+      store.put(heartOfGold.getId(), new TrashBinEntry(heartOfGold, "zaphod", Instant.now().minus(3, ChronoUnit.DAYS)));
+      Repository verticalPeopleTransporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+      store.put(verticalPeopleTransporter.getId(), new TrashBinEntry(verticalPeopleTransporter, "zaphod", Instant.now()));
+
+      assertThat(binManager.select(new TrashBinSelection(null, null, "zaphod", null, null)))
+        .containsExactlyInAnyOrder(heartOfGold.getId(), verticalPeopleTransporter.getId());
+      assertThat(binManager.select(new TrashBinSelection(null, null, "zaphod", null, Instant.now().minus(1, ChronoUnit.DAYS))))
+        .containsExactly(heartOfGold.getId());
+      assertThat(binManager.select(new TrashBinSelection(null, null, null, null, null))).isEmpty();
+    }
+
+    @Test
+    void shouldDeleteSelectedEntriesAndReportUnknownIds() {
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      store.put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now()));
+      blobStore.create(puzzle.getId());
+      List<String> selected = binManager.select(new TrashBinSelection(List.of(puzzle.getId(), "unknown"), null, null, null, null));
+
+      List<BulkResult> results = new ArrayList<>();
+      binManager.deleteBulk(selected, results::add);
+
+      assertThat(results)
+        .extracting(BulkResult::getRepositoryId, BulkResult::isSuccess)
+        .containsExactlyInAnyOrder(tuple(puzzle.getId(), true), tuple("unknown", false));
+      assertThat(store.get(puzzle.getId())).isNull();
+      assertThat(blobStore.get(puzzle.getId())).isNull();
+    }
+
+    @Test
+    void shouldRestoreSelectedEntries() {
+      binManager.addToTrashBin(puzzle);
+
+      List<BulkResult> results = new ArrayList<>();
+      binManager.restoreBulk(List.of(puzzle.getId()), results::add);
+
+      verify(importer).importFromStream(eq(puzzle), any(), eq(""));
+      assertThat(results).extracting(BulkResult::isSuccess).containsExactly(true);
+      assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().get(puzzle.getId())).isNull();
+    }
+
     @Test
     void shouldDeleteAllTrashedRepositories() {
-      ConfigurationEntryStore<TrashBinEntry> store = storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
 
       Repository puzzle = RepositoryTestData.create42Puzzle();
       store.put(puzzle.getId(), new TrashBinEntry(puzzle, "trillian", Instant.now()));
@@ -189,14 +1261,36 @@ class RepositoryBinManagerTest {
       store.put(verticalPeopleTransporter.getId(), new TrashBinEntry(verticalPeopleTransporter, "zaphod", Instant.now().plus(42, ChronoUnit.DAYS)));
       blobStore.create(verticalPeopleTransporter.getId());
 
-      binManager.deleteAll();
+      List<BulkResult> results = new ArrayList<>();
+      binManager.deleteAll(results::add);
 
       assertThat(blobStore.getAll()).isEmpty();
       assertThat(store.getAll().values()).isEmpty();
+      assertThat(results).extracting(BulkResult::isSuccess).containsExactly(true, true, true);
+    }
+
+    @Test
+    void shouldSkipLockedEntriesOnDeleteAll() {
+      Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+      binManager.addToTrashBin(puzzle);
+      binManager.addToTrashBin(heartOfGold);
+      List<BulkResult> results = new ArrayList<>();
+      doAnswer(invocation -> {
+        binManager.deleteAll(results::add);
+        return null;
+      }).when(importer).importFromStream(eq(puzzle), any(), eq(""));
+
+      binManager.restore(puzzle.getId());
+
+      assertThat(results)
+        .extracting(BulkResult::getRepositoryId, BulkResult::isSuccess)
+        .containsExactlyInAnyOrder(tuple(puzzle.getId(), false), tuple(heartOfGold.getId(), true));
+      DataStore<TrashBinEntry> store = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+      assertThat(store.getAll()).isEmpty();
     }
   }
 
   private RepositoryBinManager createBinManager() {
-    return new RepositoryBinManager(storeFactory, blobStoreFactory, importer, exporter, configAdapter);
+    return new RepositoryBinManager(dataStoreFactory, blobStoreFactory, importer, exporter, configAdapter, repositoryManager, staging, snapshotExecutor, expiryIndex, cleanupEngine, usage, restoreTasks, chunkStore, metrics, diskSpace);
   }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.schedule.Scheduler;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RepositoryBinScrubJobTest {
+
+  @Mock
+  private Scheduler scheduler;
+  @Mock
+  private RepositoryBinManager binManager;
+
+  @InjectMocks
+  private RepositoryBinScrubJob scrubJob;
+
+  @Test
+  void shouldScheduleScrub() {
+    scrubJob.run();
+
+    verify(scheduler).schedule(eq(RepositoryBinScrubJob.SCRUB_CRON), any(Runnable.class));
+  }
+
+  @Test
+  void shouldNotFailIfScrubFails() {
+    when(binManager.scrub()).thenThrow(new IllegalStateException("broken"));
+
+    scrubJob.scrub();
+
+    verify(binManager).scrub();
+  }
+}
@@ -24,6 +24,7 @@ import org.jboss.resteasy.mock.MockHttpRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -34,17 +35,26 @@ import sonia.scm.web.JsonMockHttpResponse;
 import sonia.scm.web.RestDispatcher;
 
 import jakarta.inject.Provider;
+import jakarta.ws.rs.core.MediaType;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith({MockitoExtension.class, ShiroExtension.class})
 class RepositoryTrashBinResourceTest {
 
+  private static final String SNAPSHOT_CHECKSUM = "deadbeef" + "00".repeat(28);
+
   @Mock
   private RepositoryBinManager binManager;
   @Mock
@@ -69,8 +79,9 @@ class RepositoryTrashBinResourceTest {
     when(scmPathInfoStoreProvider.get()).thenReturn(scmPathInfoStore);
 
     Repository repo = RepositoryTestData.create42Puzzle();
-    when(binManager.getAll())
-      .thenReturn(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now())));
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any()))
+      .thenReturn(new TrashBinPage(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now())), 0, 10, 1));
 
     MockHttpRequest request = MockHttpRequest.get("/v2/trashBin");
     JsonMockHttpResponse response = new JsonMockHttpResponse();
@@ -87,6 +98,7 @@ class RepositoryTrashBinResourceTest {
     assertThat(entry.get("deletedBy").textValue()).isEqualTo("trillian");
     assertThat(entry.get("_links").get("delete").get("href").textValue()).isEqualTo("scm/api/v2/trashBin/" + repo.getId());
     assertThat(entry.get("_links").get("restore")).isNull();
+    assertThat(entry.get("_links").get("snapshot").get("href").textValue()).isEqualTo("scm/api/v2/trashBin/" + repo.getId() + "/snapshot");
   }
 
   @Test
@@ -97,8 +109,9 @@ class RepositoryTrashBinResourceTest {
     when(scmPathInfoStoreProvider.get()).thenReturn(scmPathInfoStore);
 
     Repository repo = RepositoryTestData.create42Puzzle();
-    when(binManager.getAll())
-      .thenReturn(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now())));
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any()))
+      .thenReturn(new TrashBinPage(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now())), 0, 10, 1));
 
     MockHttpRequest request = MockHttpRequest.get("/v2/trashBin");
     JsonMockHttpResponse response = new JsonMockHttpResponse();
@@ -117,6 +130,111 @@ class RepositoryTrashBinResourceTest {
     assertThat(entry.get("_links").get("restore").get("href").textValue()).isEqualTo("scm/api/v2/trashBin/" + repo.getId() + "/restore");
   }
 
+  @Test
+  @SubjectAware(value = "trillian", permissions = "repository:create")
+  void shouldNotLinkSnapshotOfFailedEntry() throws URISyntaxException {
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("scm/api/"));
+    when(scmPathInfoStoreProvider.get()).thenReturn(scmPathInfoStore);
+
+    Repository repo = RepositoryTestData.create42Puzzle();
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any()))
+      .thenReturn(new TrashBinPage(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now(), SnapshotStatus.FAILED, SnapshotFormat.ARCHIVE)), 0, 10, 1));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    JsonNode entry = response.getContentAsJson().get("_embedded").get("entries").get(0);
+    assertThat(entry.get("_links").get("delete")).isNotNull();
+    assertThat(entry.get("_links").get("restore")).isNull();
+    assertThat(entry.get("_links").get("snapshot")).isNull();
+  }
+
+  @Test
+  @SubjectAware(value = "trillian")
+  void shouldGetRequestedPage() throws URISyntaxException {
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("scm/api/"));
+    when(scmPathInfoStoreProvider.get()).thenReturn(scmPathInfoStore);
+
+    Repository repo = RepositoryTestData.create42Puzzle();
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any()))
+      .thenReturn(new TrashBinPage(ImmutableList.of(new TrashBinEntry(repo, "trillian", Instant.now())), 1, 5, 12));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin?page=1&pageSize=5&sortBy=name&desc=false&q=hitch");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    ArgumentCaptor<TrashBinQuery> query = ArgumentCaptor.forClass(TrashBinQuery.class);
+    verify(binManager).getPage(query.capture());
+    assertThat(query.getValue().getPage()).isEqualTo(1);
+    assertThat(query.getValue().getPageSize()).isEqualTo(5);
+    assertThat(query.getValue().getSortBy()).isEqualTo(TrashBinSortField.NAME);
+    assertThat(query.getValue().isDescending()).isFalse();
+    assertThat(query.getValue().getFilter()).isEqualTo("hitch");
+
+    JsonNode content = response.getContentAsJson();
+    assertThat(content.get("page").intValue()).isEqualTo(1);
+    assertThat(content.get("pageTotal").intValue()).isEqualTo(3);
+    assertThat(content.get("_links").get("prev").get("href").textValue())
+      .isEqualTo("scm/api/v2/trashBin?page=0&pageSize=5&sortBy=name&desc=false&q=hitch");
+    assertThat(content.get("_links").get("next").get("href").textValue())
+      .isEqualTo("scm/api/v2/trashBin?page=2&pageSize=5&sortBy=name&desc=false&q=hitch");
+    assertThat(content.get("_links").get("last").get("href").textValue())
+      .isEqualTo("scm/api/v2/trashBin?page=2&pageSize=5&sortBy=name&desc=false&q=hitch");
+  }
+
+  @Test
+  @SubjectAware(value = "trillian")
+  void shouldReturnVersionAsEntityTag() throws URISyntaxException {
+    mockPathInfoStore();
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any())).thenReturn(new TrashBinPage(ImmutableList.of(), 0, 10, 0));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getOutputHeaders().getFirst("ETag")).hasToString("W/\"v-1\"");
+  }
+
+  @Test
+  @SubjectAware(value = "trillian")
+  void shouldReturnNotModifiedForUnchangedTrashBin() throws URISyntaxException {
+    when(binManager.getVersion()).thenReturn("v-1");
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin").header("If-None-Match", "W/\"v-1\"");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(304);
+    verify(binManager, never()).getPage(any());
+  }
+
+  @Test
+  @SubjectAware(value = "trillian", permissions = "repository:create")
+  void shouldNotReuseEntityTagOfUserWithoutRestorePermission() throws URISyntaxException {
+    mockPathInfoStore();
+    when(binManager.getVersion()).thenReturn("v-1");
+    when(binManager.getPage(any())).thenReturn(new TrashBinPage(ImmutableList.of(), 0, 10, 0));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin").header("If-None-Match", "W/\"v-1\"");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getOutputHeaders().getFirst("ETag")).hasToString("W/\"v-1-r\"");
+  }
+
   @Test
   void shouldDeleteSingleEntry() throws URISyntaxException {
     MockHttpRequest request = MockHttpRequest.delete("/v2/trashBin/id-1");
@@ -128,13 +246,200 @@ class RepositoryTrashBinResourceTest {
   }
 
   @Test
-  void shouldRestoreSingleEntry() throws URISyntaxException {
+  void shouldStartRestoreOfSingleEntry() throws URISyntaxException {
+    mockPathInfoStore();
+    Repository repo = RepositoryTestData.create42Puzzle();
+    repo.setId("id-1");
+    when(binManager.startRestore("id-1")).thenReturn(new RestoreTask("task-1", new TrashBinEntry(repo, "trillian", Instant.now())));
+
     MockHttpRequest request = MockHttpRequest.post("/v2/trashBin/id-1/restore");
     JsonMockHttpResponse response = new JsonMockHttpResponse();
 
     restDispatcher.invoke(request, response);
 
-    verify(binManager).restore("id-1");
+    assertThat(response.getStatus()).isEqualTo(202);
+    assertThat(response.getOutputHeaders().getFirst("Location")).hasToString("scm/api/v2/trashBin/restoreTasks/task-1");
+    JsonNode content = response.getContentAsJson();
+    assertThat(content.get("state").textValue()).isEqualTo("QUEUED");
+    assertThat(content.get("repositoryId").textValue()).isEqualTo("id-1");
+  }
+
+  @Test
+  void shouldGetRestoreTask() throws URISyntaxException {
+    mockPathInfoStore();
+    Repository repo = RepositoryTestData.create42Puzzle();
+    RestoreTask task = new RestoreTask("task-1", new TrashBinEntry(repo, "trillian", Instant.now()));
+    task.start();
+    task.addBytesProcessed(42);
+    when(binManager.getRestoreTask("task-1")).thenReturn(task);
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/restoreTasks/task-1");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    JsonNode content = response.getContentAsJson();
+    assertThat(content.get("state").textValue()).isEqualTo("RUNNING");
+    assertThat(content.get("bytesProcessed").longValue()).isEqualTo(42);
+    assertThat(content.get("_links").get("self").get("href").textValue()).isEqualTo("scm/api/v2/trashBin/restoreTasks/task-1");
+  }
+
+  @Test
+  void shouldStreamResultsOfBulkDelete() throws URISyntaxException {
+    when(binManager.select(any())).thenReturn(ImmutableList.of("id-1", "id-2"));
+    doAnswer(invocation -> {
+      Consumer<BulkResult> results = invocation.getArgument(1);
+      results.accept(BulkResult.success("id-1"));
+      results.accept(BulkResult.failure("id-2", "not found"));
+      return null;
+    }).when(binManager).deleteBulk(eq(ImmutableList.of("id-1", "id-2")), any());
+
+    MockHttpRequest request = MockHttpRequest.post("/v2/trashBin/bulk/delete")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"repositoryIds\":[\"id-1\",\"id-2\"]}".getBytes(StandardCharsets.UTF_8));
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n")).containsExactly(
+      "{\"repositoryId\":\"id-1\",\"success\":true}",
+      "{\"repositoryId\":\"id-2\",\"success\":false,\"error\":\"not found\"}"
+    );
+    ArgumentCaptor<TrashBinSelection> selection = ArgumentCaptor.forClass(TrashBinSelection.class);
+    verify(binManager).select(selection.capture());
+    assertThat(selection.getValue().getRepositoryIds()).containsExactly("id-1", "id-2");
+  }
+
+  @Test
+  @SubjectAware(value = "trillian", permissions = "repository:create")
+  void shouldStreamEntries() throws URISyntaxException {
+    mockPathInfoStore();
+    Repository puzzle = RepositoryTestData.create42Puzzle();
+    puzzle.setId("id-1");
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    heartOfGold.setId("id-2");
+    when(binManager.iterate(any())).thenReturn(ImmutableList.of(
+      new TrashBinEntry(puzzle, "trillian", Instant.parse("2024-01-01T10:00:00Z")),
+      new TrashBinEntry(heartOfGold, "zaphod", Instant.parse("2024-01-02T10:00:00Z"), SnapshotStatus.PENDING, SnapshotFormat.ARCHIVE)
+    ));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/stream?sortBy=name&desc=false&namespace=hitchhiker");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    String[] lines = response.getContentAsString().split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0])
+      .contains("\"name\":\"42Puzzle\"")
+      .contains("\"deletedAt\":\"2024-01-01T10:00:00Z\"")
+      .contains("\"href\":\"scm/api/v2/trashBin/id-1\"")
+      .contains("\"href\":\"scm/api/v2/trashBin/id-1/restore\"");
+    assertThat(lines[1])
+      .contains("\"status\":\"PENDING\"")
+      .doesNotContain("/restore");
+    ArgumentCaptor<TrashBinQuery> query = ArgumentCaptor.forClass(TrashBinQuery.class);
+    verify(binManager).iterate(query.capture());
+    assertThat(query.getValue().getSortBy()).isEqualTo(TrashBinSortField.NAME);
+    assertThat(query.getValue().getNamespace()).isEqualTo("hitchhiker");
+  }
+
+  @Test
+  void shouldDownloadWholeSnapshot() throws URISyntaxException {
+    when(binManager.getSnapshot("id-1")).thenReturn(snapshot("0123456789"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/id-1/snapshot");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    assertThat(response.getOutputHeaders().getFirst("Content-Length")).hasToString("10");
+    assertThat(response.getOutputHeaders().getFirst("Accept-Ranges")).isEqualTo("bytes");
+    assertThat(response.getOutputHeaders().getFirst("ETag")).hasToString("\"" + SNAPSHOT_CHECKSUM + "\"");
+    assertThat(response.getOutputHeaders().getFirst("Content-Disposition")).isEqualTo("attachment; filename=\"hitchhiker-42Puzzle.tar.gz\"");
+  }
+
+  @Test
+  void shouldDownloadRequestedRangeOfSnapshot() throws URISyntaxException {
+    when(binManager.getSnapshot("id-1")).thenReturn(snapshot("0123456789"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/id-1/snapshot")
+      .header("Range", "bytes=4-")
+      .header("If-Range", "\"" + SNAPSHOT_CHECKSUM + "\"");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(206);
+    assertThat(response.getContentAsString()).isEqualTo("456789");
+    assertThat(response.getOutputHeaders().getFirst("Content-Range")).isEqualTo("bytes 4-9/10");
+  }
+
+  @Test
+  void shouldSendWholeSnapshotIfEntityTagOfRangeDoesNotMatch() throws URISyntaxException {
+    when(binManager.getSnapshot("id-1")).thenReturn(snapshot("0123456789"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/id-1/snapshot")
+      .header("Range", "bytes=4-")
+      .header("If-Range", "\"outdated\"");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString()).isEqualTo("0123456789");
+  }
+
+  @Test
+  void shouldRejectRangeBehindEndOfSnapshot() throws URISyntaxException {
+    when(binManager.getSnapshot("id-1")).thenReturn(snapshot("0123456789"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/trashBin/id-1/snapshot")
+      .header("Range", "bytes=10-");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(416);
+    assertThat(response.getOutputHeaders().getFirst("Content-Range")).isEqualTo("bytes */10");
+  }
+
+  @Test
+  void shouldReturnSizeAndChecksumOfSnapshotWithoutReadingIt() throws URISyntaxException {
+    Repository repo = RepositoryTestData.create42Puzzle();
+    TrashBinEntry entry = new TrashBinEntry(repo, "trillian", Instant.now());
+    entry.setChecksum(SNAPSHOT_CHECKSUM);
+    when(binManager.getSnapshot("id-1")).thenReturn(new SnapshotDownload(entry, 42, (offset, length, output) -> {
+      throw new IllegalStateException("snapshot must not be read");
+    }));
+
+    MockHttpRequest request = MockHttpRequest.create("HEAD", "/v2/trashBin/id-1/snapshot");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getOutputHeaders().getFirst("Content-Length")).hasToString("42");
+    assertThat(response.getOutputHeaders().getFirst("Repr-Digest")).isEqualTo("sha-256=:3q2+7wAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=:");
+  }
+
+  private SnapshotDownload snapshot(String content) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    TrashBinEntry entry = new TrashBinEntry(RepositoryTestData.create42Puzzle(), "trillian", Instant.now());
+    entry.setChecksum(SNAPSHOT_CHECKSUM);
+    return new SnapshotDownload(entry, bytes.length, (offset, length, output) ->
+      output.write(bytes, (int) offset, length < 0 ? bytes.length - (int) offset : (int) length)
+    );
+  }
+
+  private void mockPathInfoStore() {
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("scm/api/"));
+    when(scmPathInfoStoreProvider.get()).thenReturn(scmPathInfoStore);
   }
 
   @Test
@@ -144,6 +449,26 @@ class RepositoryTrashBinResourceTest {
 
     restDispatcher.invoke(request, response);
 
-    verify(binManager).deleteAll();
+    assertThat(response.getStatus()).isEqualTo(204);
+    verify(binManager).deleteAll(any());
+  }
+
+  @Test
+  void shouldReportSkippedEntriesOnDeleteAll() throws URISyntaxException {
+    doAnswer(invocation -> {
+      Consumer<BulkResult> results = invocation.getArgument(0);
+      results.accept(BulkResult.success("id-1"));
+      results.accept(BulkResult.failure("id-2", "locked"));
+      return null;
+    }).when(binManager).deleteAll(any());
+    MockHttpRequest request = MockHttpRequest.delete("/v2/trashBin");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+
+    restDispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n")).containsExactly(
+      "{\"repositoryId\":\"id-2\",\"success\":false,\"error\":\"locked\"}"
+    );
   }
 }
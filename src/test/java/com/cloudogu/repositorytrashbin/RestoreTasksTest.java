@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(ShiroExtension.class)
+@SubjectAware("trillian")
+class RestoreTasksTest {
+
+  private final AtomicInteger keys = new AtomicInteger();
+  private final TrashBinEntry entry = createEntry();
+
+  @Test
+  void shouldRunRestoreAndTrackProgress() {
+    RestoreTasks tasks = new RestoreTasks(Runnable::run, this::createKey);
+
+    RestoreTask task = tasks.submit(entry, t -> t.addBytesProcessed(42));
+
+    assertThat(task.getState()).isEqualTo(RestoreTask.State.DONE);
+    assertThat(task.getBytesProcessed()).isEqualTo(42);
+    assertThat(task.getFinishedAt()).isNotNull();
+    assertThat(tasks.get(task.getId())).containsSame(task);
+  }
+
+  @Test
+  void shouldRecordFailure() {
+    RestoreTasks tasks = new RestoreTasks(Runnable::run, this::createKey);
+
+    RestoreTask task = tasks.submit(entry, t -> {
+      throw new IllegalStateException("no space left");
+    });
+
+    assertThat(task.getState()).isEqualTo(RestoreTask.State.FAILED);
+    assertThat(task.getError()).isEqualTo("no space left");
+  }
+
+  @Test
+  void shouldReturnRunningTaskForSameRepository() {
+    List<Runnable> queue = new ArrayList<>();
+    RestoreTasks tasks = new RestoreTasks(queue::add, this::createKey);
+
+    RestoreTask first = tasks.submit(entry, t -> {});
+    RestoreTask second = tasks.submit(entry, t -> {});
+
+    assertThat(second).isSameAs(first);
+    assertThat(queue).hasSize(1);
+    assertThat(first.getState()).isEqualTo(RestoreTask.State.QUEUED);
+  }
+
+  @Test
+  void shouldFailIfExecutorIsSaturated() {
+    RestoreTasks tasks = new RestoreTasks(command -> {
+      throw new RejectedExecutionException();
+    }, this::createKey);
+
+    assertThrows(RepositoryTrashBinException.class, () -> tasks.submit(entry, t -> {}));
+    assertThat(tasks.get("task-1")).isEmpty();
+  }
+
+  private String createKey() {
+    return "task-" + keys.incrementAndGet();
+  }
+
+  private static TrashBinEntry createEntry() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    return new TrashBinEntry(repository, "trillian", Instant.now());
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotBatchTest {
+
+  private final List<List<String>> batches = new ArrayList<>();
+  private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+  @Mock
+  private ScheduledExecutorService executor;
+
+  private SnapshotBatch createBatch() {
+    Clock clock = new Clock() {
+      @Override
+      public ZoneId getZone() {
+        return ZoneOffset.UTC;
+      }
+
+      @Override
+      public Clock withZone(ZoneId zone) {
+        return this;
+      }
+
+      @Override
+      public Instant instant() {
+        return now;
+      }
+    };
+    return new SnapshotBatch(batches::add, executor, clock);
+  }
+
+  @Test
+  void shouldDetectBurst() {
+    SnapshotBatch batch = createBatch();
+
+    assertThat(batch.isBurst(3)).isFalse();
+    assertThat(batch.isBurst(3)).isFalse();
+    assertThat(batch.isBurst(3)).isTrue();
+    assertThat(batch.isBurst(3)).isTrue();
+  }
+
+  @Test
+  void shouldEndBurstAfterWindow() {
+    SnapshotBatch batch = createBatch();
+    batch.isBurst(2);
+    batch.isBurst(2);
+
+    now = now.plus(SnapshotBatch.BURST_WINDOW).plusSeconds(1);
+
+    assertThat(batch.isBurst(2)).isFalse();
+  }
+
+  @Test
+  void shouldNeverDetectBurstIfDisabled() {
+    SnapshotBatch batch = createBatch();
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(batch.isBurst(0)).isFalse();
+    }
+  }
+
+  @Test
+  void shouldFlushAfterQuietPeriod() {
+    SnapshotBatch batch = createBatch();
+
+    batch.add("id-1");
+
+    verify(executor).schedule(any(Runnable.class), eq(SnapshotBatch.QUIET_PERIOD.toMillis()), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldFlushImmediatelyIfBatchIsFull() {
+    SnapshotBatch batch = createBatch();
+
+    for (int i = 0; i < SnapshotBatch.MAX_BATCH_SIZE; i++) {
+      batch.add("id-" + i);
+    }
+
+    verify(executor).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void shouldPassCollectedRepositoriesOnce() {
+    SnapshotBatch batch = createBatch();
+    batch.add("id-1");
+    batch.add("id-2");
+
+    batch.flush();
+    batch.flush();
+
+    assertThat(batches).containsExactly(List.of("id-1", "id-2"));
+  }
+
+  @Test
+  void shouldStopExecutorOnClose() {
+    SnapshotBatch batch = createBatch();
+
+    batch.close();
+
+    verify(executor).shutdownNow();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCodecTest {
+
+  private static final byte[] CONTENT = "Don't panic! Don't panic! Don't panic! Don't panic!".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void shouldPassThroughWithoutCompression() throws IOException {
+    assertThat(roundTrip(SnapshotCodec.NONE)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void shouldRestoreGzipCompressedContent() throws IOException {
+    assertThat(roundTrip(SnapshotCodec.GZIP)).isEqualTo(CONTENT);
+  }
+
+  @Test
+  void shouldCompressContent() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (OutputStream output = SnapshotCodec.GZIP.compress(buffer, 9)) {
+      for (int i = 0; i < 100; i++) {
+        output.write(CONTENT);
+      }
+    }
+
+    assertThat(buffer.size()).isLessThan(CONTENT.length * 10);
+  }
+
+  private byte[] roundTrip(SnapshotCodec codec) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try (OutputStream output = codec.compress(buffer, 9)) {
+      output.write(CONTENT);
+    }
+    try (InputStream input = codec.decompress(new ByteArrayInputStream(buffer.toByteArray()))) {
+      return input.readAllBytes();
+    }
+  }
+}
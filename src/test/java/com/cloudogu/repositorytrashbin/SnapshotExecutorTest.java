@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(ShiroExtension.class)
+@SubjectAware(value = "trillian")
+class SnapshotExecutorTest {
+
+  @Test
+  void shouldFinalizeWithoutSubjectOfDeletingUser() throws InterruptedException {
+    SnapshotExecutor executor = new SnapshotExecutor();
+    List<Subject> subjects = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch finished = new CountDownLatch(2);
+
+    for (int i = 0; i < 2; i++) {
+      executor.execute(() -> {
+        subjects.add(ThreadContext.getSubject());
+        finished.countDown();
+      });
+    }
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(subjects).hasSize(2).containsOnlyNulls();
+  }
+
+  @Test
+  void shouldRestoreSubjectOfCallingThread() {
+    Subject subject = ThreadContext.getSubject();
+    List<Subject> subjects = new ArrayList<>();
+
+    SnapshotExecutor.withoutSubject(() -> subjects.add(ThreadContext.getSubject())).run();
+
+    assertThat(subjects).containsOnlyNulls();
+    assertThat(ThreadContext.getSubject()).isSameAs(subject);
+  }
+}
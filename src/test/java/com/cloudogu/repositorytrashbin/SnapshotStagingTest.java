@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryLocationResolver;
+import sonia.scm.repository.RepositoryTestData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotStagingTest {
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private RepositoryLocationResolver locationResolver;
+
+  private Path location;
+  private Path stagingDirectory;
+  private SnapshotStaging staging;
+
+  private final Repository repository = RepositoryTestData.create42Puzzle();
+
+  @BeforeEach
+  void initStaging(@TempDir Path temp) throws IOException {
+    repository.setId("id-1");
+    location = temp.resolve("repositories").resolve("id-1");
+    stagingDirectory = temp.resolve("staging");
+    Files.createDirectories(location.resolve("data").resolve("refs"));
+    Files.write(location.resolve("metadata.xml"), "<repository/>".getBytes());
+    Files.write(location.resolve("data").resolve("HEAD"), "ref: refs/heads/main".getBytes());
+    lenient().when(locationResolver.forClass(Path.class).getLocation("id-1")).thenReturn(location);
+    staging = new SnapshotStaging(stagingDirectory, locationResolver);
+  }
+
+  @Test
+  void shouldStageRepositoryWithoutMetadata() throws IOException {
+    Path staged = staging.stage(repository);
+
+    assertThat(staged.resolve("data").resolve("HEAD")).hasContent("ref: refs/heads/main");
+    assertThat(staged.resolve("data").resolve("refs")).isDirectory();
+    assertThat(staged.resolve("metadata.xml")).doesNotExist();
+    assertThat(staging.find("id-1")).contains(staged);
+  }
+
+  @Test
+  void shouldKeepStagedCopyWhenRepositoryIsDeleted() throws IOException {
+    Path staged = staging.stage(repository);
+
+    SnapshotStaging.deleteRecursively(location);
+
+    assertThat(staged.resolve("data").resolve("HEAD")).hasContent("ref: refs/heads/main");
+  }
+
+  @Test
+  void shouldSumSizeOfStagedFiles() throws IOException {
+    staging.stage(repository);
+
+    assertThat(staging.size("id-1")).isEqualTo("ref: refs/heads/main".length());
+    assertThat(staging.size("id-2")).isZero();
+  }
+
+  @Test
+  void shouldRemoveStagedCopy() throws IOException {
+    staging.stage(repository);
+
+    staging.remove("id-1");
+
+    assertThat(staging.find("id-1")).isEmpty();
+  }
+
+  @Test
+  void shouldRestoreFromStagedCopy() throws IOException {
+    Path staged = staging.stage(repository);
+    Files.write(location.resolve("data").resolve("HEAD"), "fresh".getBytes());
+    Files.write(location.resolve("data").resolve("description"), "fresh".getBytes());
+
+    staging.restore(repository, staged);
+
+    assertThat(location.resolve("data").resolve("HEAD")).hasContent("ref: refs/heads/main");
+    assertThat(location.resolve("data").resolve("description")).doesNotExist();
+    assertThat(location.resolve("metadata.xml")).hasContent("<repository/>");
+  }
+
+  @Test
+  void shouldRestoreFromArchive() throws IOException {
+    Path staged = staging.stage(repository);
+    ByteArrayOutputStream archive = new ByteArrayOutputStream();
+    DirectoryArchive.write(staged, archive);
+    Files.write(location.resolve("data").resolve("HEAD"), "fresh".getBytes());
+
+    staging.restore(repository, new ByteArrayInputStream(archive.toByteArray()));
+
+    assertThat(location.resolve("data").resolve("HEAD")).hasContent("ref: refs/heads/main");
+    assertThat(location.resolve("data").resolve("refs")).isDirectory();
+    assertThat(location.resolve("metadata.xml")).hasContent("<repository/>");
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(ShiroExtension.class)
+@SubjectAware(value = "trillian")
+class TrashBinBulkRunnerTest {
+
+  private final TrashBinBulkRunner runner = new TrashBinBulkRunner();
+
+  @Test
+  void shouldRunInNameOfCurrentSubject() {
+    List<Object> principals = Collections.synchronizedList(new ArrayList<>());
+
+    runner.run(Arrays.asList("id-1", "id-2"), id -> principals.add(ThreadContext.getSubject().getPrincipal()), result -> {});
+
+    assertThat(principals).containsExactly("trillian", "trillian");
+  }
+
+  @Test
+  void shouldCollectResultOfEveryEntry() {
+    List<BulkResult> results = new ArrayList<>();
+
+    runner.run(
+      Arrays.asList("id-1", "id-2"),
+      id -> {
+        if (id.equals("id-2")) {
+          throw new IllegalStateException("locked");
+        }
+      },
+      results::add
+    );
+
+    assertThat(results)
+      .extracting(BulkResult::getRepositoryId, BulkResult::isSuccess)
+      .containsExactlyInAnyOrder(tuple("id-1", true), tuple("id-2", false));
+  }
+
+  @Test
+  void shouldRunBackgroundWorkWithoutSubject() {
+    List<Subject> subjects = Collections.synchronizedList(new ArrayList<>());
+
+    runner.runInBackground(Arrays.asList("id-1", "id-2"), id -> subjects.add(ThreadContext.getSubject()));
+
+    assertThat(subjects).hasSize(2).containsOnlyNulls();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.cloudogu.repositorytrashbin.config.TrashBinConfig;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinCleanupEngineTest {
+
+  private final InMemoryDataStoreFactory storeFactory = new InMemoryDataStoreFactory();
+  private final AtomicInteger loadChecks = new AtomicInteger();
+  private final TrashBinCleanupEngine engine = new TrashBinCleanupEngine(storeFactory, () -> loadChecks.incrementAndGet() < 3 ? 2.0 : 0.5, Duration.ZERO);
+  private final TrashBinConfig config = new TrashBinConfig();
+
+  @Test
+  void shouldPurgeAllEntries() {
+    Set<String> purged = ConcurrentHashMap.newKeySet();
+
+    CleanupStatistics statistics = engine.purge("expired", ImmutableList.of("a", "b", "c"), config, id -> {
+      purged.add(id);
+      return 42;
+    });
+
+    assertThat(purged).containsExactlyInAnyOrder("a", "b", "c");
+    assertThat(statistics.getEntriesPurged()).isEqualTo(3);
+    assertThat(statistics.getBytesFreed()).isEqualTo(126);
+    assertThat(statistics.getFailures()).isZero();
+  }
+
+  @Test
+  void shouldCountFailures() {
+    CleanupStatistics statistics = engine.purge("expired", ImmutableList.of("a", "b"), config, id -> {
+      if (id.equals("b")) {
+        throw new IOException("disk on fire");
+      }
+      return 1;
+    });
+
+    assertThat(statistics.getEntriesPurged()).isEqualTo(1);
+    assertThat(statistics.getFailures()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldPurgeWithSingleThreadAndThrottling() {
+    config.setCleanupThreads(1);
+    config.setCleanupDeletionsPerSecond(100);
+    config.setCleanupMegabytesPerSecond(1);
+
+    CleanupStatistics statistics = engine.purge("expired", ImmutableList.of("a", "b", "c"), config, id -> 1024);
+
+    assertThat(statistics.getEntriesPurged()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldPauseWhileLoadIsTooHigh() {
+    CleanupStatistics statistics = engine.purge("expired", ImmutableList.of("a"), config, id -> 1);
+
+    assertThat(statistics.getEntriesPurged()).isEqualTo(1);
+    assertThat(loadChecks.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldNotCheckLoadWithoutMaximum() {
+    config.setCleanupMaxLoad(0);
+
+    engine.purge("expired", ImmutableList.of("a"), config, id -> 1);
+
+    assertThat(loadChecks.get()).isZero();
+  }
+
+  @Test
+  void shouldStoreStatisticsOfEveryRun() {
+    engine.purge("expired", Collections.emptyList(), config, id -> 0);
+    engine.purge("quota", ImmutableList.of("a"), config, id -> 42);
+
+    List<CleanupStatistics> history = engine.getHistory();
+    assertThat(history).extracting(CleanupStatistics::getReason).containsExactly("quota", "expired");
+    assertThat(history.get(0).getBytesFreed()).isEqualTo(42);
+    assertThat(history.get(1).getEntriesPurged()).isZero();
+    assertThat(history.get(1).getStartedAt()).isNotNull();
+  }
+
+  @Test
+  void shouldKeepOnlyLatestRuns() {
+    for (int i = 0; i < TrashBinCleanupEngine.MAX_STORED_RUNS; i++) {
+      engine.purge("expired", Collections.emptyList(), config, id -> 0);
+    }
+    engine.purge("quota", Collections.emptyList(), config, id -> 0);
+
+    List<CleanupStatistics> history = engine.getHistory();
+    assertThat(history).hasSize(TrashBinCleanupEngine.MAX_STORED_RUNS);
+    assertThat(history.get(0).getReason()).isEqualTo("quota");
+  }
+}
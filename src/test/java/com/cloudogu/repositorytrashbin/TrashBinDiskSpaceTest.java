@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryLocationResolver;
+import sonia.scm.repository.RepositoryTestData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TrashBinDiskSpaceTest {
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private RepositoryLocationResolver locationResolver;
+
+  private Path location;
+  private TrashBinDiskSpace diskSpace;
+
+  private final Repository repository = RepositoryTestData.create42Puzzle();
+
+  @BeforeEach
+  void initDiskSpace(@TempDir Path temp) {
+    repository.setId("id-1");
+    location = temp.resolve("repositories").resolve("id-1");
+    diskSpace = new TrashBinDiskSpace(temp, locationResolver);
+  }
+
+  @Test
+  void shouldEstimateSizeOfRepositoryDirectory() throws IOException {
+    Files.createDirectories(location.resolve("data"));
+    Files.write(location.resolve("metadata.xml"), new byte[100]);
+    Files.write(location.resolve("data").resolve("pack"), new byte[4096]);
+    when(locationResolver.forClass(Path.class).getLocation("id-1")).thenReturn(location);
+
+    assertThat(diskSpace.estimateSize(repository)).isEqualTo(4196);
+  }
+
+  @Test
+  void shouldEstimateZeroForMissingDirectory() {
+    when(locationResolver.forClass(Path.class).getLocation("id-1")).thenReturn(location);
+
+    assertThat(diskSpace.estimateSize(repository)).isZero();
+  }
+
+  @Test
+  void shouldReturnUsableSpace() {
+    assertThat(diskSpace.getUsableSpace()).isNotEmpty();
+  }
+}
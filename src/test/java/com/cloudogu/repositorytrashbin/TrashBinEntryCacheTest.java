@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinEntryCacheTest {
+
+  private final InMemoryDataStoreFactory storeFactory = new InMemoryDataStoreFactory();
+  private final DataStore<TrashBinEntry> store = storeFactory.withType(TrashBinEntry.class).withName(RepositoryBinManager.ENTRY_STORE_NAME).build();
+  private final TrashBinEntryCache cache = new TrashBinEntryCache(storeFactory);
+
+  @Test
+  void shouldLoadEntriesOnce() {
+    store.put("puzzle", entry(RepositoryTestData.create42Puzzle()));
+
+    assertThat(cache.get("puzzle")).isNotNull();
+    assertThat(cache.isLoaded()).isTrue();
+
+    store.remove("puzzle");
+
+    assertThat(cache.get("puzzle")).isNotNull();
+  }
+
+  @Test
+  void shouldWriteThrough() {
+    cache.getAll();
+
+    cache.put("puzzle", entry(RepositoryTestData.create42Puzzle()));
+    cache.put("hog", entry(RepositoryTestData.createHeartOfGold()));
+    cache.remove("puzzle");
+
+    assertThat(store.getAll()).containsOnlyKeys("hog");
+    assertThat(cache.getAll()).containsOnlyKeys("hog");
+  }
+
+  @Test
+  void shouldReadStoreAgainAfterInvalidation() {
+    cache.getAll();
+    store.put("puzzle", entry(RepositoryTestData.create42Puzzle()));
+
+    cache.invalidate();
+
+    assertThat(cache.isLoaded()).isFalse();
+    assertThat(cache.get("puzzle")).isNotNull();
+  }
+
+  @Test
+  void shouldNotExposeCachedMap() {
+    cache.put("puzzle", entry(RepositoryTestData.create42Puzzle()));
+
+    cache.getAll().clear();
+
+    assertThat(cache.getAll()).containsOnlyKeys("puzzle");
+  }
+
+  @Test
+  void shouldNotShareEntriesWithCallers() {
+    cache.getAll();
+    TrashBinEntry entry = entry(RepositoryTestData.create42Puzzle());
+    cache.put("puzzle", entry);
+
+    entry.setStatus(SnapshotStatus.CORRUPT);
+    cache.get("puzzle").setStatus(SnapshotStatus.FAILED);
+    cache.getAll().get("puzzle").setStatus(SnapshotStatus.PENDING);
+
+    assertThat(cache.get("puzzle").getStatus()).isEqualTo(SnapshotStatus.READY);
+  }
+
+  private TrashBinEntry entry(Repository repository) {
+    return new TrashBinEntry(repository, "trillian", Instant.now());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinExpiryIndexTest {
+
+  private final InMemoryDataStoreFactory storeFactory = new InMemoryDataStoreFactory();
+  private final Instant now = Instant.now();
+
+  @Test
+  void shouldNotBeInitializedWithoutStore() {
+    assertThat(new TrashBinExpiryIndex(storeFactory).isInitialized()).isFalse();
+  }
+
+  @Test
+  void shouldRebuildFromEntries() {
+    Repository puzzle = RepositoryTestData.create42Puzzle();
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+
+    index.rebuild(ImmutableMap.of(
+      "puzzle", new TrashBinEntry(puzzle, "trillian", now.minus(2, ChronoUnit.DAYS)),
+      "hog", new TrashBinEntry(heartOfGold, "zaphod", now.minus(5, ChronoUnit.DAYS))
+    ));
+
+    assertThat(index.isInitialized()).isTrue();
+    assertThat(index.getOldestDeletion()).contains(now.minus(5, ChronoUnit.DAYS));
+  }
+
+  @Test
+  void shouldReturnEntriesDeletedBeforeThresholdInOrder() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+    index.add("a", now.minus(10, ChronoUnit.DAYS));
+    index.add("b", now.minus(40, ChronoUnit.DAYS));
+    index.add("c", now.minus(31, ChronoUnit.DAYS));
+
+    assertThat(index.getDeletedBefore(now.minus(30, ChronoUnit.DAYS))).containsExactly("b", "c");
+  }
+
+  @Test
+  void shouldReturnAllEntriesOldestFirst() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+    index.add("a", now.minus(10, ChronoUnit.DAYS));
+    index.add("b", now.minus(40, ChronoUnit.DAYS));
+    index.add("c", now.minus(31, ChronoUnit.DAYS));
+
+    assertThat(index.getOldestFirst()).containsExactly("b", "c", "a");
+  }
+
+  @Test
+  void shouldRemoveEntries() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+    index.add("a", now.minus(10, ChronoUnit.DAYS));
+    index.add("b", now.minus(40, ChronoUnit.DAYS));
+
+    index.remove("b");
+
+    assertThat(index.getOldestDeletion()).contains(now.minus(10, ChronoUnit.DAYS));
+  }
+
+  @Test
+  void shouldStoreEveryEntrySeparately() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+    index.add("a", now.minus(10, ChronoUnit.DAYS));
+    index.add("b", now.minus(40, ChronoUnit.DAYS));
+
+    index.remove("b");
+
+    assertThat(storeFactory.withType(TrashBinExpiryIndex.ExpiryEntry.class).withName(TrashBinExpiryIndex.STORE_NAME).build().getAll())
+      .containsOnlyKeys("a");
+  }
+
+  @Test
+  void shouldKeepRebuiltEmptyIndexInitialized() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+
+    index.rebuild(ImmutableMap.of());
+
+    assertThat(index.isInitialized()).isTrue();
+  }
+
+  @Test
+  void shouldLoadPersistedIndex() {
+    TrashBinExpiryIndex index = new TrashBinExpiryIndex(storeFactory);
+    index.add("a", now.minus(10, ChronoUnit.DAYS));
+    index.add("b", now.minus(40, ChronoUnit.DAYS));
+
+    TrashBinExpiryIndex reloaded = new TrashBinExpiryIndex(storeFactory);
+
+    assertThat(reloaded.isInitialized()).isTrue();
+    assertThat(reloaded.getDeletedBefore(now)).containsExactly("b", "a");
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinIndexTest {
+
+  private final Repository puzzle = RepositoryTestData.create42Puzzle();
+  private final Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+  private final Repository transporter = RepositoryTestData.createHappyVerticalPeopleTransporter();
+
+  private final TrashBinIndex index = new TrashBinIndex();
+
+  @BeforeEach
+  void loadIndex() {
+    puzzle.setId("puzzle");
+    heartOfGold.setId("hog");
+    transporter.setId("transporter");
+    index.load(ImmutableMap.of(
+      "puzzle", new TrashBinEntry(puzzle, "trillian", Instant.now().minus(1, ChronoUnit.DAYS)),
+      "hog", new TrashBinEntry(heartOfGold, "zaphod", Instant.now().minus(3, ChronoUnit.DAYS)),
+      "transporter", new TrashBinEntry(transporter, "zaphod", Instant.now().minus(2, ChronoUnit.DAYS))
+    ));
+  }
+
+  @Test
+  void shouldLoadOnlyOnce() {
+    index.loadIfNecessary(ImmutableMap::of);
+
+    assertThat(index.query(query(0, 10, TrashBinSortField.NAME, false, null, null)).getEntries()).hasSize(3);
+  }
+
+  @Test
+  void shouldLoadAfterInvalidation() {
+    index.invalidate();
+
+    index.loadIfNecessary(() -> ImmutableMap.of("puzzle", new TrashBinEntry(puzzle, "trillian", Instant.now())));
+
+    assertThat(index.isLoaded()).isTrue();
+    assertThat(index.query(query(0, 10, TrashBinSortField.NAME, false, null, null)).getEntries())
+      .extracting(TrashBinEntry::getRepositoryId)
+      .containsExactly("puzzle");
+  }
+
+  @Test
+  void shouldSortByDeletionDateDescending() {
+    TrashBinPage page = index.query(query(0, 10, TrashBinSortField.DELETED_AT, true, null, null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId)
+      .containsExactly("puzzle", "transporter", "hog");
+    assertThat(page.getTotalEntries()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldSortByName() {
+    TrashBinPage page = index.query(query(0, 10, TrashBinSortField.NAME, false, null, null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getName)
+      .hasSize(3)
+      .isSortedAccordingTo(Comparator.naturalOrder());
+  }
+
+  @Test
+  void shouldReturnRequestedPage() {
+    TrashBinPage page = index.query(query(1, 2, TrashBinSortField.DELETED_AT, true, null, null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId).containsExactly("hog");
+    assertThat(page.getTotalEntries()).isEqualTo(3);
+    assertThat(page.getPageTotal()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldFilterEntries() {
+    TrashBinPage page = index.query(query(0, 1, TrashBinSortField.DELETED_AT, true, null, "zaphod"));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId).containsExactly("transporter");
+    assertThat(page.getTotalEntries()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldFilterByDisplayName() {
+    TrashBinPage page = index.query(query(0, 10, TrashBinSortField.DELETED_AT, true, "heart", null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId).containsExactly("hog");
+  }
+
+  @Test
+  void shouldUpdateAndRemoveEntries() {
+    index.put("hog", new TrashBinEntry(heartOfGold, "zaphod", Instant.now()));
+    index.remove("puzzle");
+
+    TrashBinPage page = index.query(query(0, 10, TrashBinSortField.DELETED_AT, true, null, null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getRepositoryId).containsExactly("hog", "transporter");
+  }
+
+  @Test
+  void shouldKeepOrderIfReturnedEntriesAreChanged() {
+    index.query(query(0, 10, TrashBinSortField.NAME, false, null, null)).getEntries()
+      .forEach(entry -> entry.setName("changed"));
+
+    TrashBinPage page = index.query(query(0, 10, TrashBinSortField.NAME, false, null, null));
+
+    assertThat(page.getEntries()).extracting(TrashBinEntry::getName)
+      .containsExactlyInAnyOrder(puzzle.getName(), heartOfGold.getName(), transporter.getName())
+      .isSortedAccordingTo(Comparator.naturalOrder());
+  }
+
+  @Test
+  void shouldIterateOverFilteredEntries() {
+    assertThat(index.iterate(query(0, 1, TrashBinSortField.DELETED_AT, false, null, "zaphod")))
+      .extracting(TrashBinEntry::getRepositoryId)
+      .containsExactly("hog", "transporter");
+  }
+
+  @Test
+  void shouldIterateOverMoreEntriesThanFitIntoOneBatch() {
+    Map<String, TrashBinEntry> entries = new HashMap<>();
+    for (int i = 0; i < TrashBinIndex.BATCH_SIZE * 2 + 1; i++) {
+      Repository repository = new Repository("id-" + i, "git", "space", String.format("repository-%04d", i));
+      entries.put(repository.getId(), new TrashBinEntry(repository, "trillian", Instant.now()));
+    }
+    index.load(entries);
+
+    List<TrashBinEntry> iterated = new ArrayList<>();
+    index.iterate(query(0, 10, TrashBinSortField.NAME, false, null, null)).forEach(iterated::add);
+
+    assertThat(iterated).hasSize(TrashBinIndex.BATCH_SIZE * 2 + 1)
+      .extracting(TrashBinEntry::getName)
+      .isSortedAccordingTo(Comparator.naturalOrder())
+      .doesNotHaveDuplicates();
+  }
+
+  private TrashBinQuery query(int page, int pageSize, TrashBinSortField sortBy, boolean desc, String filter, String deletedBy) {
+    return new TrashBinQuery(page, pageSize, sortBy, desc, filter, null, deletedBy);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.ConcurrentModificationException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrashBinLocksTest {
+
+  private final TrashBinLocks locks = new TrashBinLocks();
+
+  @Test
+  void shouldReturnResultOfOperation() {
+    String result = locks.call("id-1", TrashBinLocks.NO_WAIT, () -> "done");
+
+    assertThat(result).isEqualTo("done");
+    assertThat(locks.isLocked("id-1")).isFalse();
+  }
+
+  @Test
+  void shouldRejectNestedOperationOnSameRepository() {
+    locks.run("id-1", TrashBinLocks.NO_WAIT, () ->
+      assertThrows(ConcurrentModificationException.class, () -> locks.run("id-1", TrashBinLocks.NO_WAIT, () -> {}))
+    );
+
+    assertThat(locks.isLocked("id-1")).isFalse();
+  }
+
+  @Test
+  void shouldAllowOperationsOnDifferentRepositories() {
+    String result = locks.call("id-1", TrashBinLocks.NO_WAIT, () -> locks.call("id-2", TrashBinLocks.NO_WAIT, () -> "both"));
+
+    assertThat(result).isEqualTo("both");
+  }
+
+  @Test
+  void shouldReleaseLockIfOperationFails() {
+    assertThrows(IllegalStateException.class, () -> locks.run("id-1", TrashBinLocks.NO_WAIT, () -> {
+      throw new IllegalStateException("failed");
+    }));
+
+    assertThat(locks.isLocked("id-1")).isFalse();
+    locks.run("id-1", TrashBinLocks.NO_WAIT, () -> {});
+  }
+
+  @Test
+  void shouldWaitForRunningOperation() throws Exception {
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> running = executor.submit(() -> locks.run("id-1", TrashBinLocks.NO_WAIT, () -> {
+        locked.countDown();
+        awaitQuietly(release);
+      }));
+      assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+      assertThrows(ConcurrentModificationException.class, () -> locks.run("id-1", TrashBinLocks.NO_WAIT, () -> {}));
+
+      release.countDown();
+      String result = locks.call("id-1", Duration.ofSeconds(5), () -> "after");
+
+      assertThat(result).isEqualTo("after");
+      running.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(locks.isLocked("id-1")).isFalse();
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
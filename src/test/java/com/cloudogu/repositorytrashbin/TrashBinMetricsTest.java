@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinMetricsTest {
+
+  private final InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+  private final TrashBinExpiryIndex expiryIndex = new TrashBinExpiryIndex(new InMemoryDataStoreFactory());
+  private final TrashBinUsage usage = new TrashBinUsage(storeFactory);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final TrashBinMetrics metrics = new TrashBinMetrics(registry, expiryIndex, usage);
+
+  @Test
+  void shouldReportEntriesAndStoredBytes() {
+    expiryIndex.add("a", Instant.now());
+    expiryIndex.add("b", Instant.now());
+    usage.initialize(42);
+
+    assertThat(registry.get("scm.trashbin.entries").gauge().value()).isEqualTo(2);
+    assertThat(registry.get("scm.trashbin.stored").gauge().value()).isEqualTo(42);
+  }
+
+  @Test
+  void shouldRecordSnapshots() {
+    metrics.snapshotWritten(SnapshotFormat.EXPORT, Duration.ofMillis(100), 1024);
+
+    assertThat(registry.get("scm.trashbin.snapshot.duration").tag("format", "export").timer().count()).isEqualTo(1);
+    assertThat(registry.get("scm.trashbin.snapshot.size").tag("format", "export").summary().totalAmount()).isEqualTo(1024);
+  }
+
+  @Test
+  void shouldRecordCleanup() {
+    metrics.cleanupFinished("expired", new CleanupStatistics("expired", Instant.now(), 10, 3, 1, 2048));
+
+    assertThat(registry.get("scm.trashbin.cleanup.purged").tag("reason", "expired").counter().count()).isEqualTo(3);
+    assertThat(registry.get("scm.trashbin.cleanup.freed").counter().count()).isEqualTo(2048);
+    assertThat(registry.get("scm.trashbin.failures").tag("operation", "cleanup").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldCountFailuresByCause() {
+    metrics.failed("restore", new UncheckedIOException(new IOException("disk full")));
+
+    assertThat(registry.get("scm.trashbin.failures").tag("operation", "restore").tag("cause", "IOException").counter().count())
+      .isEqualTo(1);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinUsageTest {
+
+  private final InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+
+  @Test
+  void shouldNotBeInitializedWithoutStore() {
+    assertThat(new TrashBinUsage(storeFactory).isInitialized()).isFalse();
+  }
+
+  @Test
+  void shouldTrackTotal() {
+    TrashBinUsage usage = new TrashBinUsage(storeFactory);
+    usage.initialize(100);
+
+    usage.add(50);
+    usage.add(-30);
+
+    assertThat(usage.getTotalBytes()).isEqualTo(120);
+  }
+
+  @Test
+  void shouldNotDropBelowZero() {
+    TrashBinUsage usage = new TrashBinUsage(storeFactory);
+    usage.initialize(10);
+
+    usage.add(-20);
+
+    assertThat(usage.getTotalBytes()).isZero();
+  }
+
+  @Test
+  void shouldLoadPersistedTotal() {
+    new TrashBinUsage(storeFactory).initialize(42);
+
+    TrashBinUsage usage = new TrashBinUsage(storeFactory);
+
+    assertThat(usage.isInitialized()).isTrue();
+    assertThat(usage.getTotalBytes()).isEqualTo(42);
+  }
+}
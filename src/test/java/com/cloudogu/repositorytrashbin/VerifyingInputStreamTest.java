@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VerifyingInputStreamTest {
+
+  private static final byte[] CONTENT = "heart of gold".getBytes(StandardCharsets.UTF_8);
+  private static final String CHECKSUM = Hashing.sha256().hashBytes(CONTENT).toString();
+
+  @Test
+  void shouldReadMatchingContent() throws IOException {
+    try (InputStream input = new VerifyingInputStream(new ByteArrayInputStream(CONTENT), CHECKSUM)) {
+      assertThat(ByteStreams.toByteArray(input)).isEqualTo(CONTENT);
+    }
+  }
+
+  @Test
+  void shouldFailAtEndOfDamagedContent() {
+    byte[] damaged = CONTENT.clone();
+    damaged[3] = 'x';
+    InputStream input = new VerifyingInputStream(new ByteArrayInputStream(damaged), CHECKSUM);
+
+    assertThrows(VerifyingInputStream.ChecksumMismatchException.class, () -> ByteStreams.exhaust(input));
+  }
+
+  @Test
+  void shouldVerifyRemainingContentOnClose() throws IOException {
+    byte[] damaged = CONTENT.clone();
+    damaged[10] = 'x';
+    InputStream input = new VerifyingInputStream(new ByteArrayInputStream(damaged), CHECKSUM);
+    assertThat(input.read(new byte[4])).isEqualTo(4);
+
+    assertThrows(VerifyingInputStream.ChecksumMismatchException.class, input::close);
+  }
+
+  @Test
+  void shouldHashSkippedBytes() throws IOException {
+    try (InputStream input = new VerifyingInputStream(new ByteArrayInputStream(CONTENT), CHECKSUM)) {
+      input.skip(5);
+      ByteStreams.exhaust(input);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CronExpressionValidatorTest {
+
+  @Test
+  void shouldAcceptValidExpressions() {
+    assertThat(CronExpressionValidator.isValid(TrashBinConfig.DEFAULT_CLEANUP_CRON)).isTrue();
+    assertThat(CronExpressionValidator.isValid("0 */15 8-18 ? * MON-FRI")).isTrue();
+    assertThat(CronExpressionValidator.isValid("0 0 12 1,15 JAN,jul ? 2030")).isTrue();
+    assertThat(CronExpressionValidator.isValid("30 5/10 22-2 L * ?")).isTrue();
+    assertThat(CronExpressionValidator.isValid("0 0 3 15W * ?")).isTrue();
+    assertThat(CronExpressionValidator.isValid("0 0 3 ? * 6#3")).isTrue();
+    assertThat(CronExpressionValidator.isValid("0 0 3 ? * FRIL")).isTrue();
+  }
+
+  @Test
+  void shouldRejectWrongNumberOfFields() {
+    assertThat(CronExpressionValidator.isValid("0 2 * * *")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 * * ? 2030 1")).isFalse();
+    assertThat(CronExpressionValidator.isValid("")).isFalse();
+  }
+
+  @Test
+  void shouldRejectValuesOutOfRange() {
+    assertThat(CronExpressionValidator.isValid("60 0 2 * * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 24 * * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 32 * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 ? 13 *")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 ? * 8")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 ? * 1#6")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 */0 2 * * ?")).isFalse();
+  }
+
+  @Test
+  void shouldRejectMalformedFields() {
+    assertThat(CronExpressionValidator.isValid("0 0 2,, * * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 two * * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 * FOO ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("? 0 2 * * ?")).isFalse();
+  }
+
+  @Test
+  void shouldRequireQuestionMarkForEitherDayOfMonthOrDayOfWeek() {
+    assertThat(CronExpressionValidator.isValid("0 0 2 * * *")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 ? * ?")).isFalse();
+    assertThat(CronExpressionValidator.isValid("0 0 2 ? * *")).isTrue();
+  }
+
+  @Test
+  void shouldAcceptMissingValue() {
+    assertThat(new CronExpressionValidator().isValid(null, null)).isTrue();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.migration;
+
+import com.cloudogu.repositorytrashbin.TrashBinEntry;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.ConfigurationEntryStore;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.InMemoryConfigurationEntryStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.time.Instant;
+
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.ENTRY_STORE_NAME;
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.STORE_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinEntryStoreUpdateStepTest {
+
+  private final InMemoryConfigurationEntryStoreFactory storeFactory = new InMemoryConfigurationEntryStoreFactory();
+  private final InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+
+  @Test
+  void shouldMoveEntriesToDataStore() {
+    ConfigurationEntryStore<TrashBinEntry> legacyStore = storeFactory.withType(TrashBinEntry.class).withName(STORE_NAME).build();
+    legacyStore.put("id-1", new TrashBinEntry(RepositoryTestData.create42Puzzle(), "trillian", Instant.now()));
+    legacyStore.put("id-2", new TrashBinEntry(RepositoryTestData.createHeartOfGold(), "dent", Instant.now()));
+
+    new TrashBinEntryStoreUpdateStep(storeFactory, dataStoreFactory).doUpdate();
+
+    DataStore<TrashBinEntry> entryStore = dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build();
+    assertThat(entryStore.getAll()).containsOnlyKeys("id-1", "id-2");
+    assertThat(entryStore.get("id-2").getDeletedBy()).isEqualTo("dent");
+    assertThat(legacyStore.getAll()).isEmpty();
+  }
+
+  @Test
+  void shouldDoNothingWithoutEntries() {
+    new TrashBinEntryStoreUpdateStep(storeFactory, dataStoreFactory).doUpdate();
+
+    assertThat(dataStoreFactory.withType(TrashBinEntry.class).withName(ENTRY_STORE_NAME).build().getAll()).isEmpty();
+  }
+}
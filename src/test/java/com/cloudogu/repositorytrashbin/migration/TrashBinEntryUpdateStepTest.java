@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.repositorytrashbin.migration;
+
+import com.cloudogu.repositorytrashbin.SnapshotStatus;
+import com.cloudogu.repositorytrashbin.TrashBinEntry;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.InMemoryConfigurationEntryStore;
+import sonia.scm.store.InMemoryConfigurationEntryStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.time.Instant;
+
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.REPOSITORY_STORE_NAME;
+import static com.cloudogu.repositorytrashbin.RepositoryBinManager.STORE_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashBinEntryUpdateStepTest {
+
+  private final InMemoryConfigurationEntryStoreFactory storeFactory = new InMemoryConfigurationEntryStoreFactory();
+  private final InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+
+  @Test
+  void shouldMoveRepositoryOutOfEntry() {
+    Repository puzzle = RepositoryTestData.create42Puzzle();
+    Instant deletedAt = Instant.now();
+    TrashBinEntryUpdateStep.LegacyTrashBinEntry legacyEntry = new TrashBinEntryUpdateStep.LegacyTrashBinEntry();
+    legacyEntry.setRepository(puzzle);
+    legacyEntry.setDeletedBy("trillian");
+    legacyEntry.setDeletedAt(deletedAt);
+    InMemoryConfigurationEntryStore<Object> store = storeFactory.get(STORE_NAME);
+    store.put("id-1", legacyEntry);
+
+    new TrashBinEntryUpdateStep(storeFactory, dataStoreFactory).doUpdate();
+
+    TrashBinEntry entry = (TrashBinEntry) store.get("id-1");
+    assertThat(entry.getRepositoryId()).isEqualTo("id-1");
+    assertThat(entry.getNamespace()).isEqualTo(puzzle.getNamespace());
+    assertThat(entry.getName()).isEqualTo(puzzle.getName());
+    assertThat(entry.getType()).isEqualTo(puzzle.getType());
+    assertThat(entry.getDeletedBy()).isEqualTo("trillian");
+    assertThat(entry.getDeletedAt()).isEqualTo(deletedAt);
+    assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.READY);
+    assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().get("id-1"))
+      .isEqualTo(puzzle);
+  }
+
+  @Test
+  void shouldMigrateEntryWithoutRepositoryAsCorruptPlaceholder() {
+    Instant deletedAt = Instant.now();
+    TrashBinEntryUpdateStep.LegacyTrashBinEntry legacyEntry = new TrashBinEntryUpdateStep.LegacyTrashBinEntry();
+    legacyEntry.setDeletedBy("trillian");
+    legacyEntry.setDeletedAt(deletedAt);
+    InMemoryConfigurationEntryStore<Object> store = storeFactory.get(STORE_NAME);
+    store.put("id-1", legacyEntry);
+
+    new TrashBinEntryUpdateStep(storeFactory, dataStoreFactory).doUpdate();
+
+    TrashBinEntry entry = (TrashBinEntry) store.get("id-1");
+    assertThat(entry.getRepositoryId()).isEqualTo("id-1");
+    assertThat(entry.getNamespace()).isEqualTo(TrashBinEntryUpdateStep.UNKNOWN_NAMESPACE);
+    assertThat(entry.getName()).isEqualTo("id-1");
+    assertThat(entry.getDeletedBy()).isEqualTo("trillian");
+    assertThat(entry.getDeletedAt()).isEqualTo(deletedAt);
+    assertThat(entry.getStatus()).isEqualTo(SnapshotStatus.CORRUPT);
+    assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().getAll()).isEmpty();
+  }
+
+  @Test
+  void shouldDoNothingWithoutLegacyEntries() {
+    new TrashBinEntryUpdateStep(storeFactory, dataStoreFactory).doUpdate();
+
+    assertThat(storeFactory.get(STORE_NAME).getAll()).isEmpty();
+    assertThat(dataStoreFactory.withType(Repository.class).withName(REPOSITORY_STORE_NAME).build().getAll()).isEmpty();
+  }
+}